@@ -0,0 +1,116 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/* Class for batch command. Runs commands read from standard input one line at a time in a single process, so
+ * loaded objects, commit-graph and stage are shared by every command. Stage is kept in memory while the batch runs
+ * and written to disk once at the end. Each line has the same arguments as gitlet.Main, separated by spaces, and
+ * arguments containing spaces are quoted. Blank lines and lines starting with '#' are skipped.
+ * Note: output of each command ends with a new line, so output of consecutive commands is not joined.
+ */
+public class Batch {
+
+    /** Run every command read from standard input */
+    static void run() throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        PrintStream stdout = System.out;
+        LineEndStream lineEnd = new LineEndStream(stdout);
+        System.setOut(new PrintStream(lineEnd, true));
+        Stage.share();
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] args = tokenize(line);
+                if (args.length == 0 || line.trim().startsWith("#")) {
+                    continue;
+                } else if (Daemon.LOCAL_COMMANDS.contains(args[0])) {
+                    Main.errorMessage();
+                    continue;
+                }
+                Main.main(args);
+                if (!lineEnd._isLineEnd) {
+                    System.out.println();
+                }
+            }
+        } finally {
+            Stage.flush();
+            System.out.flush();
+            System.setOut(stdout);
+        }
+    }
+
+    /**
+     * Split command line into arguments. Arguments are separated by whitespace, text between single or double quotes
+     * is kept in one argument, and a backslash outside single quotes keeps the next character as it is.
+     */
+    static String[] tokenize(String line) {
+        ArrayList<String> args = new ArrayList<>();
+        StringBuilder arg = new StringBuilder();
+        boolean isArg = false;      // Whether an argument was started, so quoted empty argument is kept
+        char quote = 0;             // Quote character of quoted text being read, or 0 outside quotes
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && quote != '\'' && i + 1 < line.length()) {
+                arg.append(line.charAt(++i));
+                isArg = true;
+            } else if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    arg.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                isArg = true;
+            } else if (Character.isWhitespace(c)) {
+                if (isArg) {
+                    args.add(arg.toString());
+                    arg.setLength(0);
+                    isArg = false;
+                }
+            } else {
+                arg.append(c);
+                isArg = true;
+            }
+        }
+        if (isArg) {
+            args.add(arg.toString());
+        }
+        return args.toArray(new String[0]);
+    }
+
+    /* Output stream that records whether the last byte written ended a line */
+    private static class LineEndStream extends OutputStream {
+        OutputStream _out;          // Stream written to
+        boolean _isLineEnd = true;  // Whether output is empty or ends with a new line
+
+        /** Constructor */
+        LineEndStream(OutputStream out) {
+            _out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            _out.write(b);
+            _isLineEnd = b == '\n';
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > 0) {
+                _out.write(bytes, offset, length);
+                _isLineEnd = bytes[offset + length - 1] == '\n';
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            _out.flush();
+        }
+    }
+}
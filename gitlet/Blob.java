@@ -1,47 +1,164 @@
 package gitlet;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.PushbackInputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
- * Class for Blob objects
+ * Class for Blob objects. Contents are hashed and stored by streaming the file in chunks,
+ * so memory used is bounded regardless of file size and binary files are stored unchanged.
  */
 public class Blob implements GitletObject, Serializable {
-    String _name;           // Name of file
-    String _fileContent;    // Contents of file
-    String _sha1;           // Blob hash
+    private static final long serialVersionUID = -1222090110746310946L; // Note: allows reading uncompressed blobs
+    static final int CHUNK_SIZE = 8192;     // Number of bytes read from file at a time
+
+    String _name;                   // Name of file
+    String _sha1;                   // Blob hash
+    long _size;                     // Size of file contents in bytes
+    transient File _file;           // File blob was created from
+    transient byte[] _legacyContent; // Contents of blob written before compression
 
     /**
      * Blob constructor
      */
     public Blob(File file) {
         this._name = file.getName();                            // Name of file
-        this._fileContent = Utils.readContentsAsString(file);   // Contents of file
+        this._file = file;                                      // File blob was created from
+        this._size = file.length();                             // Size of file contents
         this._sha1 = createHash();                              // Blob hash
     }
 
     /**
-     * Write blob to disk
+     * Blob constructor for file whose hash is already known
+     */
+    public Blob(File file, String sha1) {
+        this._name = file.getName();
+        this._file = file;
+        this._size = file.length();
+        this._sha1 = sha1;
+    }
+
+    /**
+     * Write blob to disk. Contents are compressed with deflate level set in config while file is read.
      */
     @Override
     public void write() throws IOException {
-        File innerFile = Utils.join(Main.BLOB, _sha1.substring(0,2));
-        innerFile.mkdir();
-        File loc = Utils.join(Main.BLOB, _sha1.substring(0,2), _sha1.substring(2));
-        loc.createNewFile();
-        Utils.writeObject(loc, this);
+        if (ObjectStore.contains(_sha1, Main.BLOB)) {
+            return;
+        }
+        Deflater deflater = new Deflater(Config.compressionLevel());
+        try (InputStream in = new DeflaterInputStream(new FileInputStream(_file), deflater, CHUNK_SIZE)) {
+            ObjectStore.write(_sha1, in, Main.BLOB);
+        } finally {
+            deflater.end();
+        }
     }
 
     /**
-     * Create SHA1 hash for blob
+     * Compress given file contents in stored blob format, with deflate level set in config
      */
-    public String createHash() {
-        return Utils.sha1(_fileContent, _name);
+    static byte[] compress(byte[] contents) {
+        Deflater deflater = new Deflater(Config.compressionLevel());
+        try (InputStream in = new DeflaterInputStream(new ByteArrayInputStream(contents), deflater, CHUNK_SIZE)) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            deflater.end();
+        }
     }
-}
 
+    /**
+     * Open stream over stored contents of this blob
+     */
+    public InputStream openStream() throws IOException {
+        return openStream(_sha1);
+    }
 
+    /**
+     * Open stream over contents of blob with given SHA1. Contents are decompressed as stream is read.
+     */
+    public static InputStream openStream(String sha1) throws IOException {
+        InputStream stored = ObjectStore.open(sha1, Main.BLOB);
+        if (stored == null) {
+            throw Utils.error("No blob with that id exists.");
+        }
+        PushbackInputStream in = new PushbackInputStream(new BufferedInputStream(stored, CHUNK_SIZE));
+        int first = in.read();
+        if (first >= 0) {
+            in.unread(first);
+        }
 
+        // Note: blobs written before compression are serialized Blob objects
+        if (first == 0xac) {
+            try (ObjectInputStream legacy = new ObjectInputStream(in)) {
+                Blob blob = (Blob) legacy.readObject();
+                return new ByteArrayInputStream(blob._legacyContent);
+            } catch (ClassNotFoundException | ClassCastException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return new InflaterInputStream(in);
+    }
 
+    /**
+     * Read contents of blob with given SHA1, or no contents if SHA1 is null (file does not exist)
+     */
+    static byte[] readContents(String sha1) {
+        if (sha1 == null) {
+            return new byte[0];
+        }
+        try (InputStream in = openStream(sha1)) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Create SHA1 hash for blob from file contents only. Note: file name is kept in tree entry,
+     * so identical files are stored once regardless of name.
+     */
+    public String createHash() {
+        try (InputStream in = new FileInputStream(_file)) {
+            return hash(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Create SHA1 hash of contents read from given stream in chunks
+     */
+    static String hash(InputStream in) throws IOException {
+        MessageDigest md = Pack.digest();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        for (int n = in.read(chunk); n >= 0; n = in.read(chunk)) {
+            md.update(chunk, 0, n);
+        }
+        return Utils.toHex(md.digest());
+    }
 
+    /**
+     * Read blob written before compression, which holds its contents as a String field
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        _name = (String) fields.get("_name", null);
+        _sha1 = (String) fields.get("_sha1", null);
+        String content = (String) fields.get("_fileContent", "");
+        _legacyContent = content.getBytes(StandardCharsets.UTF_8);
+        _size = _legacyContent.length;
+    }
+}
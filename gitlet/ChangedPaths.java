@@ -0,0 +1,205 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/* Class for changed-path Bloom filters of commit-graph rows. Each filter holds the paths of files changed by a commit
+ * since its first parent, along with every directory containing them, so a history walk for one path skips commits
+ * whose filter rules the path out without reading their trees. Filters are computed for every commit-graph row the
+ * first time they are needed and appended to their file in row order, like rows of the commit-graph itself.
+ *
+ * Layout: "CGBF" | version | rows [20-byte commit id | int filter length | filter bytes]
+ * Note: filter length is -1 for commits changing more than MAX_PATHS paths, which may have changed any path.
+ * A row whose commit id differs from commit-graph row (ex: commit-graph was rebuilt) is dropped with every row after it.
+ */
+public class ChangedPaths {
+    static final int VERSION = 1;               // Current changed-path filter format version
+    static final int BITS_PER_PATH = 10;        // Filter bits per changed path (Note: about 1% false positives)
+    static final int HASHES = 7;                // Number of bits set per path
+    static final int MAX_PATHS = 512;           // Number of changed paths above which no filter is stored
+    static final int SEED1 = 0x293ae76f;        // Seed of first path hash
+    static final int SEED2 = 0x7e646e2c;        // Seed of second path hash
+
+    private static ChangedPaths _filters;       // Filters loaded by current process
+
+    byte[] _data;                               // Contents of filter file
+    int[] _offsets;                             // Offset of filter in file contents per row
+    int[] _lengths;                             // Filter length per row, or -1 if commit has no filter
+    int _count;                                 // Number of rows with filter
+
+    /** Constructor for filters read from given file contents */
+    private ChangedPaths(byte[] data, int[] offsets, int[] lengths, int count) {
+        _data = data;
+        _offsets = offsets;
+        _lengths = lengths;
+        _count = count;
+    }
+
+    /** Get filters of every row of given commit-graph, computing filters of rows added since last use */
+    static ChangedPaths get(CommitGraph graph) {
+        // Note: file is read again before appending, since another process may have appended rows
+        if (_filters == null || _filters._count < graph._count) {
+            _filters = load(graph);
+        }
+        if (_filters._count < graph._count) {
+            _filters.append(graph);
+            _filters = load(graph);
+        }
+        return _filters;
+    }
+
+    /** Forget loaded filters so they are read again from disk */
+    static void reload() {
+        _filters = null;
+    }
+
+    /** Check if commit of given row may have changed given path. False means path is certainly unchanged. */
+    boolean mightChange(int row, String path) {
+        if (row >= _count || _lengths[row] < 0) {
+            return true;
+        } else if (_lengths[row] == 0) {
+            return false;
+        }
+        int bits = _lengths[row] * 8;
+        int hash1 = hash(path, SEED1);
+        int hash2 = hash(path, SEED2) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = Integer.remainderUnsigned(hash1 + i * hash2, bits);
+            if ((_data[_offsets[row] + bit / 8] & (1 << (bit % 8))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Compute filters of rows not in file yet and append them to filter file */
+    private void append(CommitGraph graph) {
+        boolean isNew = !Main.CHANGED_PATHS.isFile() || Main.CHANGED_PATHS.length() == 0;
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(Main.CHANGED_PATHS, true))) {
+            if (isNew) {
+                out.writeInt(Pack.magic("CGBF"));
+                out.writeInt(VERSION);
+            }
+            ByteArrayOutputStream rows = new ByteArrayOutputStream();
+            DataOutputStream rowOut = new DataOutputStream(rows);
+            for (int row = _count; row < graph._count; row++) {
+                int parent = graph._firstParents[row];
+                String parentTree = parent != CommitGraph.NO_PARENT ? graph._trees.get(parent) : null;
+                byte[] filter = filter(Tree.changes(parentTree, graph._trees.get(row)).keySet());
+                rowOut.write(Utils.toBytes(graph._ids.get(row)));
+                rowOut.writeInt(filter != null ? filter.length : -1);
+                if (filter != null) {
+                    rowOut.write(filter);
+                }
+            }
+            out.write(rows.toByteArray());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Create filter of given changed file paths and their directories. Returns null if too many paths changed. */
+    static byte[] filter(Iterable<String> changed) {
+        TreeSet<String> paths = new TreeSet<>();
+        for (String path : changed) {
+            for (int slash = path.indexOf('/'); slash >= 0; slash = path.indexOf('/', slash + 1)) {
+                paths.add(path.substring(0, slash));
+            }
+            paths.add(path);
+        }
+        if (paths.size() > MAX_PATHS) {
+            return null;
+        }
+        byte[] filter = new byte[(paths.size() * BITS_PER_PATH + 7) / 8];
+        int bits = filter.length * 8;
+        for (String path : paths) {
+            int hash1 = hash(path, SEED1);
+            // Note: step between bits is odd, so the bits of a path are distinct since filter size is a multiple of 8
+            int hash2 = hash(path, SEED2) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                int bit = Integer.remainderUnsigned(hash1 + i * hash2, bits);
+                filter[bit / 8] |= 1 << (bit % 8);
+            }
+        }
+        return filter;
+    }
+
+    /** Hash UTF-8 bytes of given path with 32-bit murmur3 and given seed */
+    static int hash(String path, int seed) {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        int h = seed;
+        int i = 0;
+        for (; i + 4 <= bytes.length; i += 4) {
+            int k = (bytes[i] & 0xff) | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff) << 16
+                    | (bytes[i + 3] & 0xff) << 24;
+            h ^= mix(k);
+            h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+        }
+        int k = 0;
+        for (int shift = 0; i < bytes.length; i++, shift += 8) {
+            k |= (bytes[i] & 0xff) << shift;
+        }
+        if (bytes.length % 4 != 0) {
+            h ^= mix(k);
+        }
+        h ^= bytes.length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /** Scramble block of murmur3 input */
+    private static int mix(int k) {
+        k *= 0xcc9e2d51;
+        k = Integer.rotateLeft(k, 15);
+        return k * 0x1b873593;
+    }
+
+    /** Read filter file, keeping rows that match rows of given commit-graph. Note: file is cut after the last
+     *  matching complete row, so filters of later rows are computed again. */
+    private static ChangedPaths load(CommitGraph graph) {
+        int[] offsets = new int[graph._count];
+        int[] lengths = new int[graph._count];
+        if (!Main.CHANGED_PATHS.isFile()) {
+            return new ChangedPaths(new byte[0], offsets, lengths, 0);
+        }
+        byte[] data = Utils.readContents(Main.CHANGED_PATHS);
+        ByteBuffer in = ByteBuffer.wrap(data);
+        if (in.remaining() < Pack.HEADER_SIZE || in.getInt() != Pack.magic("CGBF") || in.getInt() != VERSION) {
+            Main.CHANGED_PATHS.delete();
+            return new ChangedPaths(new byte[0], offsets, lengths, 0);
+        }
+        byte[] id = new byte[Pack.ID_LENGTH];
+        int count = 0;
+        while (count < graph._count && in.remaining() >= Pack.ID_LENGTH + 4) {
+            in.get(id);
+            int length = in.getInt();
+            if (!Arrays.equals(id, Utils.toBytes(graph._ids.get(count))) || length > in.remaining()) {
+                break;
+            }
+            offsets[count] = in.position();
+            lengths[count] = length;
+            in.position(in.position() + Math.max(length, 0));
+            count += 1;
+        }
+        int end = count > 0 ? offsets[count - 1] + Math.max(lengths[count - 1], 0) : Pack.HEADER_SIZE;
+        if (end < data.length) {
+            try (RandomAccessFile file = new RandomAccessFile(Main.CHANGED_PATHS, "rw")) {
+                file.setLength(end);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return new ChangedPaths(data, offsets, lengths, count);
+    }
+}
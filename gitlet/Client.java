@@ -0,0 +1,28 @@
+package gitlet;
+
+import java.io.IOException;
+
+/* Thin client for gitlet daemon. Sends command to daemon of repository in current directory and prints its output,
+ * so a command does not pay for loading repository state again. Command runs in this process if no daemon is running.
+   Usage: java gitlet.Client ARGS, where ARGS are the same as for gitlet.Main
+*/
+public class Client {
+
+    public static void main(String... args) throws IOException {
+        if (args.length > 0 && Daemon.LOCAL_COMMANDS.contains(args[0])) {
+            Main.main(args);
+            return;
+        }
+        int exitCode;
+        try {
+            exitCode = Daemon.send(args, System.out, System.err);
+        } catch (IOException excp) {
+            // Note: daemon is not running or socket file was left behind by daemon that was killed
+            Main.main(args);
+            return;
+        }
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+}
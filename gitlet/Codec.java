@@ -0,0 +1,158 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/* Class for compact binary encoding of commits, trees and the stage. Encoded objects begin with a type byte and
+ * a format version, followed by fields written as varints, length-prefixed strings and 20-byte binary identifiers. */
+public class Codec {
+    static final byte COMMIT = 1;               // Type byte of encoded commit
+    static final byte TREE = 2;                 // Type byte of encoded tree
+    static final byte STAGE = 3;                // Type byte of encoded stage
+    static final int VERSION = 4;               // Current format version (2: commits store full parent identifiers,
+                                                // 3: stage stores stat data of working files,
+                                                // 4: trees store subdirectory trees)
+
+    /** Check if contents were written with Java serialization by an older version of gitlet */
+    static boolean isSerialized(byte[] contents) {
+        return contents.length >= 2 && (contents[0] & 0xff) == 0xac && (contents[1] & 0xff) == 0xed;
+    }
+
+    /** Class for writing encoded object */
+    static class Encoder {
+        ByteArrayOutputStream _out;             // Encoded contents
+
+        /** Constructor. Writes header for object of given type. */
+        Encoder(byte type) {
+            _out = new ByteArrayOutputStream();
+            _out.write(type);
+            _out.write(VERSION);
+        }
+
+        /** Write single byte */
+        void writeByte(int value) {
+            _out.write(value);
+        }
+
+        /** Write unsigned number using 7 bits per byte. High bit marks that more bytes follow. */
+        void writeVarint(long value) {
+            while ((value & ~0x7fL) != 0) {
+                _out.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            _out.write((int) value);
+        }
+
+        /** Write length-prefixed UTF-8 string */
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            _out.write(bytes, 0, bytes.length);
+        }
+
+        /** Write SHA1 identifier as 20 bytes */
+        void writeID(String id) {
+            if (id.length() != Utils.UID_LENGTH) {
+                throw Utils.error("Invalid object identifier: %s", id);
+            }
+            _out.write(Utils.toBytes(id), 0, Pack.ID_LENGTH);
+        }
+
+        /** Write file entries {Name of file: SHA1 hash} sorted by file name */
+        void writeEntries(Map<String, String> entries) {
+            writeVarint(entries.size());
+            for (Map.Entry<String, String> entry : new TreeMap<>(entries).entrySet()) {
+                writeString(entry.getKey());
+                writeID(entry.getValue());
+            }
+        }
+
+        /** Get encoded contents */
+        byte[] toByteArray() {
+            return _out.toByteArray();
+        }
+    }
+
+    /** Class for reading encoded object directly from buffer */
+    static class Decoder {
+        ByteBuffer _in;                         // Encoded contents
+        int _version;                           // Format version of encoded object
+
+        /** Constructor. Reads header and checks object has given type. */
+        Decoder(ByteBuffer in, byte type) {
+            _in = in;
+            if (_in.get() != type) {
+                throw Utils.error("Unexpected object type.");
+            }
+            _version = _in.get();
+            if (_version < 1 || _version > VERSION) {
+                throw Utils.error("Unknown object format version: %d", _version);
+            }
+        }
+
+        /** Read single byte */
+        int readByte() {
+            return _in.get() & 0xff;
+        }
+
+        /** Read unsigned number written with writeVarint */
+        long readVarint() {
+            long result = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (shift > 63) {
+                    throw Utils.error("Corrupt object: varint too long.");
+                }
+                b = _in.get();
+                result |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return result;
+        }
+
+        /** Read length-prefixed UTF-8 string */
+        String readString() {
+            byte[] bytes = new byte[(int) readVarint()];
+            _in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /** Read 20-byte SHA1 identifier */
+        String readID() {
+            byte[] id = new byte[Pack.ID_LENGTH];
+            _in.get(id);
+            return Utils.toHex(id);
+        }
+
+        /** Read file entries written with writeEntries */
+        HashMap<String, String> readEntries() {
+            int size = (int) readVarint();
+            HashMap<String, String> entries = new HashMap<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                String name = readString();
+                entries.put(name, readID());
+            }
+            return entries;
+        }
+    }
+
+    /** Read encoded contents with given reader. Converts truncated contents into gitlet error. */
+    static <T> T decode(byte[] contents, byte type, Reader<T> reader) {
+        try {
+            return reader.read(new Decoder(ByteBuffer.wrap(contents), type));
+        } catch (BufferUnderflowException excp) {
+            throw Utils.error("Corrupt object: unexpected end of contents.");
+        }
+    }
+
+    /** Interface for reading fields of object from decoder */
+    interface Reader<T> {
+        T read(Decoder in);
+    }
+}
@@ -2,29 +2,52 @@ package gitlet;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 /* Class for commit command */
 public class Commit implements GitletObject, Serializable {
+    private static final long serialVersionUID = 1298652075993383628L; // Note: allows reading serialized commits
+    static final int HAS_PARENT = 1;        // Encoding flag for parent identifier (format version 1)
+    static final int HAS_TREE = 2;          // Encoding flag for tree identifier
+    static final int HAS_MERGE = 4;         // Encoding flag for abbreviated merge identifiers (format version 1)
     public static String zeroSha1 = "0000000000000000000000000000000000000000"; // Initial gitlet commit identifier
-    String _parentSha1;     // Parent commit identifier
+    ArrayList<String> _parents; // Parent commit identifiers (Note: second parent is merged-in branch)
     String _logMessage;     // Commit message
     String _tree;           // Tree object identifier
     String _sha1;           // Commit identifier
     String _time;           // Timestamp in -- [Day] [Month] [Date] 00:00:00 [Year] format
-    String _mergedId;       // Merge commit identifier
     Tree _treeObject;       // Temporary holder for tree objets
 
     /** Constructor for general commits */
     public Commit(String message, String parentSha1) throws IOException {
-        _parentSha1 = parentSha1;           // Parent identifier
+        _parents = new ArrayList<>();       // Parent identifiers
+        if (parentSha1 != null) {
+            _parents.add(parentSha1);
+        }
         _logMessage = message;              // Commit message
         _time = Utils.createTime();         // Time commit created
         _treeObject = new Tree();           // Container for file blobs (Note: This field is deleted upon commit.)
         _tree = _treeObject._sha1;          // Tree object identifier
         _sha1 = createHash();               // Commit identifier
-        _mergedId = null;                   // Merge commit identifier
+    }
+
+    /** Constructor for commit with given parents and tree, created on given branch without reading HEAD or stage */
+    Commit(String message, List<String> parents, String tree, String time, String branchName) {
+        _parents = new ArrayList<>(parents);
+        _logMessage = message;
+        _tree = tree;
+        _time = time;
+        _sha1 = createHash(branchName);
+    }
+
+    /** Constructor for commits read from disk */
+    private Commit(String sha1) {
+        _sha1 = sha1;
+        _parents = new ArrayList<>();
     }
 
     /**
@@ -62,14 +85,21 @@ public class Commit implements GitletObject, Serializable {
     /** Get commits based on SHA1 identifier */
     static Commit getByID(String id) {
         if (id != null) {
-            File file = Utils.createFilePath(id, Main.COMMITS);
-            if (file != null) {
-                return Utils.readObject(file, Commit.class);
-            }
+            return ObjectStore.readObject(id, Main.COMMITS, Commit::decode);
         }
         return null;
     }
 
+    /** Get first parent identifier. Returns null for initial commit. */
+    String getParent() {
+        return _parents.isEmpty() ? null : _parents.get(0);
+    }
+
+    /** Check if commit has more than one parent */
+    boolean isMerge() {
+        return _parents.size() > 1;
+    }
+
     /** Write commit to disk and update the HEAD branch based on new commit id */
     public void write() throws IOException {
 
@@ -90,7 +120,8 @@ public class Commit implements GitletObject, Serializable {
 
         // Write commit to disk
         // Note: This function is part of GitlitObject interface
-        writeToDisk(_sha1, this, Main.COMMITS);
+        writeToDisk(_sha1, encode(), Main.COMMITS);
+        MessageIndex.add(this);
 
         // Update HEAD commit in current branch
         Branch.update(_sha1, Branch.getCurrentName(), Main.BRANCH);
@@ -99,12 +130,95 @@ public class Commit implements GitletObject, Serializable {
         Stage.clear();
     }
 
+    /** Encode commit in binary format. Note: identifier is not encoded since it is the object's file name. */
+    public byte[] encode() {
+        Codec.Encoder out = new Codec.Encoder(Codec.COMMIT);
+        out.writeByte(_tree != null ? HAS_TREE : 0);
+        if (_tree != null) {
+            out.writeID(_tree);
+        }
+        out.writeVarint(_parents.size());
+        for (String parent : _parents) {
+            out.writeID(parent);
+        }
+        out.writeString(_time);
+        out.writeString(_logMessage);
+        return out.toByteArray();
+    }
+
+    /** Decode commit with given identifier. Commits written by older versions are upgraded as they are read. */
+    static Commit decode(String id, byte[] contents) {
+        if (Codec.isSerialized(contents)) {
+            return Utils.deserialize(contents, Commit.class);
+        }
+        return Codec.decode(contents, Codec.COMMIT, in -> {
+            Commit commit = new Commit(id);
+            int flags = in.readByte();
+            if (in._version == 1) {
+                if ((flags & HAS_PARENT) != 0) {
+                    commit._parents.add(in.readID());
+                }
+                commit._tree = (flags & HAS_TREE) != 0 ? in.readID() : null;
+                if ((flags & HAS_MERGE) != 0) {
+                    commit.addMergedParent(in.readString());
+                }
+            } else {
+                commit._tree = (flags & HAS_TREE) != 0 ? in.readID() : null;
+                for (long i = in.readVarint(); i > 0; i--) {
+                    commit._parents.add(in.readID());
+                }
+            }
+            commit._time = in.readString();
+            commit._logMessage = in.readString();
+            return commit;
+        });
+    }
+
+    /** Add merged-in parent from abbreviated merge identifiers ("[parent] [merged-in parent]") written by older
+     *  versions. Note: parent is skipped if abbreviation no longer matches a single commit. */
+    private void addMergedParent(String mergedId) {
+        if (mergedId == null || mergedId.length() < 15) {
+            return;
+        }
+        String merged = ObjectStore.resolve(mergedId.substring(8, 15), Main.COMMITS);
+        if (merged != null) {
+            _parents.add(merged);
+        }
+    }
+
+    /** Read commit written with Java serialization, which held parents as separate fields */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        _logMessage = (String) fields.get("_logMessage", null);
+        _tree = (String) fields.get("_tree", null);
+        _sha1 = (String) fields.get("_sha1", null);
+        _time = (String) fields.get("_time", null);
+        _parents = new ArrayList<>();
+        String parent = (String) fields.get("_parentSha1", null);
+        if (parent != null) {
+            _parents.add(parent);
+        }
+        addMergedParent((String) fields.get("_mergedId", null));
+    }
+
     /** Create commit identifier */
     public String createHash() {
-        if (_parentSha1 == null) {
+        return createHash(Branch.getCurrentName());
+    }
+
+    /**
+     * Create identifier for commit created on given branch. Note: parent identifiers are hashed too, so commits
+     * with same tree, message and time on same branch (ex: imported, or created within one second) stay distinct.
+     */
+    String createHash(String branchName) {
+        if (_parents.isEmpty()) {
             return zeroSha1;
         }
-        String branchName = Branch.getCurrentName();
-        return Utils.sha1(_tree, _logMessage, _time, branchName);
+        ArrayList<Object> fields = new ArrayList<>(_parents);
+        fields.add(0, _tree);
+        fields.add(1, _logMessage);
+        fields.add(2, _time);
+        fields.add(3, branchName);
+        return Utils.sha1(fields);
     }
 }
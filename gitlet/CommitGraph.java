@@ -0,0 +1,297 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/* Class for commit-graph file, which stores parents, tree, generation number and timestamp of every commit in
+ * fixed-width rows, so ancestry queries run without reading commit objects. Commits are appended the first time
+ * they are queried, with parents always written before children, so parents are referenced by row number.
+ *
+ * Layout: "CGPH" | version | rows [20-byte id | 20-byte tree | int first parent row | int second parent row
+ *         | int generation | long timestamp]
+ * Note: generation is 1 for root commits and 1 + highest parent generation otherwise, so a commit can only be
+ * an ancestor of commits with a higher generation.
+ */
+public class CommitGraph {
+    static final int VERSION = 1;               // Current commit-graph format version
+    static final int ROW_SIZE = 2 * Pack.ID_LENGTH + 3 * 4 + 8; // Length of single row
+    static final int NO_PARENT = -1;            // Parent row of commits without parent
+    static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("'Date: 'EEE MMM dd HH:mm:ss yyyy Z"); // Format of commit timestamps
+
+    private static CommitGraph _graph;          // Commit-graph loaded by current process
+
+    HashMap<String, Integer> _rows;             // {Commit identifier: Row number}
+    ArrayList<String> _ids;                     // Commit identifier per row
+    ArrayList<String> _trees;                   // Tree identifier per row
+    int[] _firstParents;                        // First parent row per row
+    int[] _secondParents;                       // Second (merged) parent row per row
+    int[] _generations;                         // Generation number per row
+    long[] _times;                              // Commit timestamp in seconds per row
+    int _count;                                 // Number of rows
+    int _written;                               // Number of rows saved in commit-graph file
+
+    /** Constructor for empty commit-graph */
+    private CommitGraph() {
+        _rows = new HashMap<>();
+        _ids = new ArrayList<>();
+        _trees = new ArrayList<>();
+        _firstParents = new int[16];
+        _secondParents = new int[16];
+        _generations = new int[16];
+        _times = new long[16];
+    }
+
+    /** Get commit-graph of current repository, reading commit-graph file on first use */
+    static CommitGraph get() {
+        if (_graph == null) {
+            _graph = load();
+        }
+        return _graph;
+    }
+
+    /** Forget loaded commit-graph so it is read again from disk */
+    static void reload() {
+        _graph = null;
+    }
+
+    /** Check if commit ANCESTOR is reachable from COMMIT (a commit is its own ancestor) */
+    static boolean isAncestor(String ancestor, String commit) {
+        CommitGraph graph = get();
+        int target = graph.row(ancestor);
+        int start = graph.row(commit);
+        if (target == NO_PARENT || start == NO_PARENT) {
+            return false;
+        }
+        // Note: commits with lower generation than ancestor cannot reach it, so their history is skipped
+        int generation = graph._generations[target];
+        boolean[] seen = new boolean[graph._count];
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        pending.push(start);
+        while (!pending.isEmpty()) {
+            int row = pending.pop();
+            if (row == target) {
+                return true;
+            } else if (seen[row] || graph._generations[row] <= generation) {
+                continue;
+            }
+            seen[row] = true;
+            for (int parent : graph.parents(row)) {
+                pending.push(parent);
+            }
+        }
+        return false;
+    }
+
+    /** Get common ancestor of CURRENT and GIVEN commits with shortest distance from current commit.
+     *  Returns null if commits share no history. */
+    static String splitPoint(String current, String given) {
+        CommitGraph graph = get();
+        int currentRow = graph.row(current);
+        int givenRow = graph.row(given);
+        if (currentRow == NO_PARENT || givenRow == NO_PARENT) {
+            return null;
+        }
+
+        // Mark every ancestor of given commit
+        boolean[] givenHistory = new boolean[graph._count];
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        pending.push(givenRow);
+        while (!pending.isEmpty()) {
+            int row = pending.pop();
+            if (!givenHistory[row]) {
+                givenHistory[row] = true;
+                for (int parent : graph.parents(row)) {
+                    pending.push(parent);
+                }
+            }
+        }
+
+        // Note: breadth-first search visits current commit history in order of distance
+        boolean[] seen = new boolean[graph._count];
+        pending.add(currentRow);
+        seen[currentRow] = true;
+        while (!pending.isEmpty()) {
+            int row = pending.remove();
+            if (givenHistory[row]) {
+                return graph._ids.get(row);
+            }
+            for (int parent : graph.parents(row)) {
+                if (!seen[parent]) {
+                    seen[parent] = true;
+                    pending.add(parent);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Get row of commit with given identifier, adding commit and any missing ancestors to commit-graph.
+     *  Returns NO_PARENT if commit does not exist. */
+    int row(String id) {
+        Integer row = _rows.get(id);
+        if (row != null) {
+            return row;
+        }
+        Commit commit = Commit.getByID(id);
+        if (commit == null) {
+            return NO_PARENT;
+        }
+
+        // Note: commits are added once all of their parents are added, so stack holds history not yet in graph
+        ArrayDeque<Commit> pending = new ArrayDeque<>();
+        pending.push(commit);
+        while (!pending.isEmpty()) {
+            Commit next = pending.peek();
+            boolean ready = true;
+            for (String parentID : next._parents) {
+                Commit parent = _rows.containsKey(parentID) ? null : Commit.getByID(parentID);
+                if (parent != null) {
+                    pending.push(parent);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                pending.pop();
+                if (!_rows.containsKey(next._sha1)) {
+                    add(next);
+                }
+            }
+        }
+        save();
+        return _rows.get(commit._sha1);
+    }
+
+    /** Get parent rows of given row */
+    int[] parents(int row) {
+        if (_firstParents[row] == NO_PARENT) {
+            return new int[0];
+        } else if (_secondParents[row] == NO_PARENT) {
+            return new int[]{_firstParents[row]};
+        }
+        return new int[]{_firstParents[row], _secondParents[row]};
+    }
+
+    /** Add row for commit whose parents are already in commit-graph */
+    private void add(Commit commit) {
+        List<String> parents = commit._parents;
+        int first = parents.size() > 0 ? _rows.getOrDefault(parents.get(0), NO_PARENT) : NO_PARENT;
+        int second = parents.size() > 1 ? _rows.getOrDefault(parents.get(1), NO_PARENT) : NO_PARENT;
+        int generation = 1;
+        for (int parent : new int[]{first, second}) {
+            if (parent != NO_PARENT) {
+                generation = Math.max(generation, _generations[parent] + 1);
+            }
+        }
+        append(commit._sha1, commit._tree, first, second, generation, parseTime(commit._time));
+    }
+
+    /** Append row to loaded commit-graph */
+    private void append(String id, String tree, int first, int second, int generation, long time) {
+        if (_count == _generations.length) {
+            int capacity = _count * 2;
+            _firstParents = Arrays.copyOf(_firstParents, capacity);
+            _secondParents = Arrays.copyOf(_secondParents, capacity);
+            _generations = Arrays.copyOf(_generations, capacity);
+            _times = Arrays.copyOf(_times, capacity);
+        }
+        _rows.put(id, _count);
+        _ids.add(id);
+        _trees.add(tree);
+        _firstParents[_count] = first;
+        _secondParents[_count] = second;
+        _generations[_count] = generation;
+        _times[_count] = time;
+        _count += 1;
+    }
+
+    /** Append rows added since last save to commit-graph file */
+    private void save() {
+        if (_written == _count) {
+            return;
+        }
+        boolean isNew = !Main.COMMIT_GRAPH.isFile() || Main.COMMIT_GRAPH.length() == 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(Main.COMMIT_GRAPH, true)))) {
+            if (isNew) {
+                out.writeInt(Pack.magic("CGPH"));
+                out.writeInt(VERSION);
+            }
+            for (int row = _written; row < _count; row++) {
+                out.write(Utils.toBytes(_ids.get(row)));
+                String tree = _trees.get(row);
+                out.write(tree != null ? Utils.toBytes(tree) : new byte[Pack.ID_LENGTH]);
+                out.writeInt(_firstParents[row]);
+                out.writeInt(_secondParents[row]);
+                out.writeInt(_generations[row]);
+                out.writeLong(_times[row]);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _written = _count;
+    }
+
+    /** Read commit-graph file. Note: file is rebuilt if it is unreadable, and a partially written last row
+     *  is dropped so later rows stay aligned. */
+    private static CommitGraph load() {
+        CommitGraph graph = new CommitGraph();
+        if (!Main.COMMIT_GRAPH.isFile()) {
+            return graph;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Utils.readContents(Main.COMMIT_GRAPH));
+        if (in.remaining() < Pack.HEADER_SIZE || in.getInt() != Pack.magic("CGPH") || in.getInt() != VERSION) {
+            Main.COMMIT_GRAPH.delete();
+            return graph;
+        }
+        int count = in.remaining() / ROW_SIZE;
+        byte[] id = new byte[Pack.ID_LENGTH];
+        byte[] tree = new byte[Pack.ID_LENGTH];
+        for (int row = 0; row < count; row++) {
+            in.get(id);
+            in.get(tree);
+            int first = in.getInt();
+            int second = in.getInt();
+            if (first >= row || second >= row) {
+                Main.COMMIT_GRAPH.delete();
+                return new CommitGraph();
+            }
+            String treeID = Utils.toHex(tree);
+            graph.append(Utils.toHex(id), Arrays.equals(tree, new byte[Pack.ID_LENGTH]) ? null : treeID,
+                    first, second, in.getInt(), in.getLong());
+        }
+        graph._written = count;
+        if (in.remaining() > 0) {
+            try (RandomAccessFile file = new RandomAccessFile(Main.COMMIT_GRAPH, "rw")) {
+                file.setLength(Pack.HEADER_SIZE + (long) count * ROW_SIZE);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return graph;
+    }
+
+    /** Convert commit timestamp into seconds since epoch. Returns 0 if timestamp cannot be read. */
+    static long parseTime(String time) {
+        if (time == null) {
+            return 0;
+        }
+        try {
+            return ZonedDateTime.parse(time, TIME_FORMAT).toEpochSecond();
+        } catch (DateTimeParseException excp) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package gitlet;
+
+import java.util.HashMap;
+import java.util.zip.Deflater;
+
+/* Class for repository configuration. Settings are saved in config.txt as "key=value" lines. */
+public class Config {
+    static final String COMPRESSION = "compression";    // Deflate level for stored blobs (0-9, -1 for default)
+    static final String CACHE_SIZE = "cacheSize";       // Maximum bytes of decoded objects cached per process
+    static final String CHECKOUT_THREADS = "checkoutThreads"; // Number of threads writing files during checkout
+
+    private static HashMap<String, String> _values;    // Settings read by current process
+
+    /** Get value of given setting. Returns null if setting is not configured. */
+    static String get(String key) {
+        if (_values == null) {
+            _values = new HashMap<>();
+            if (Main.CONFIG.isFile()) {
+                for (String line : Utils.readContentsAsString(Main.CONFIG).split("\n")) {
+                    int i = line.indexOf("=");
+                    if (i > 0) {
+                        _values.put(line.substring(0, i).trim(), line.substring(i + 1).trim());
+                    }
+                }
+            }
+        }
+        return _values.get(key);
+    }
+
+    /** Get integer value of given setting. Returns default value if setting is missing or not a number. */
+    static int getInt(String key, int defaultValue) {
+        String value = get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException excp) {
+            return defaultValue;
+        }
+    }
+
+    /** Get deflate compression level used when writing blobs */
+    static int compressionLevel() {
+        int level = getInt(COMPRESSION, Deflater.DEFAULT_COMPRESSION);
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            return Deflater.DEFAULT_COMPRESSION;
+        }
+        return level;
+    }
+
+    /** Get number of threads used to write files during checkout. Defaults to number of processors. */
+    static int checkoutThreads() {
+        return Math.max(1, getInt(CHECKOUT_THREADS, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /** Clear settings so they are read again from disk */
+    static void reload() {
+        _values = null;
+    }
+}
@@ -0,0 +1,219 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+
+/* Class for daemon command. A daemon keeps one process running per repository and runs commands sent by
+ * gitlet.Client over a Unix domain socket (.gitlet/daemon.sock), so object cache, packs, settings and commit-graph
+ * stay loaded between commands. Commands run one at a time in the order they arrive.
+ *
+ * Request: int argument count | arguments (modified UTF-8)
+ * Reply:   frames [byte stream | int length | bytes], ending with [EXIT | int exit code]
+ * Note: loaded state is dropped whenever another process changes packs, settings or commit-graph.
+ */
+public class Daemon {
+    static final File SOCKET = Utils.join(Main.GITLET, "daemon.sock");  // Socket file of repository daemon
+    static final byte EXIT = 0;         // Frame with exit code of command
+    static final byte OUT = 1;          // Frame with standard output of command
+    static final byte ERR = 2;          // Frame with error output of command
+    static final Set<String> LOCAL_COMMANDS = Set.of("daemon", "batch", "fast-import"); // Commands client runs itself
+
+    private static String _stamp;       // Repository state when last command finished
+
+    /** Run daemon in current repository until stopped with "daemon stop" */
+    static void serve() throws IOException {
+        if (isRunning()) {
+            System.out.print("Daemon is already running.");
+            return;
+        }
+        // Note: socket file left behind by daemon that was killed is replaced
+        SOCKET.delete();
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(SOCKET.toPath()));
+            boolean isStopped = false;
+            while (!isStopped) {
+                try (SocketChannel client = server.accept()) {
+                    isStopped = handle(client);
+                } catch (IOException excp) {
+                    // Note: client disconnected before reply was sent, so daemon keeps serving
+                    continue;
+                } finally {
+                    System.setOut(stdout);
+                    System.setErr(stderr);
+                }
+            }
+        } finally {
+            SOCKET.delete();
+        }
+    }
+
+    /** Ask daemon of current repository to stop */
+    static void stop() throws IOException {
+        if (!isRunning()) {
+            System.out.print("No daemon is running.");
+            return;
+        }
+        send(new String[]{"daemon", "stop"}, System.out, System.err);
+    }
+
+    /** Check if a daemon is accepting connections in current repository */
+    static boolean isRunning() {
+        try (SocketChannel channel = connect()) {
+            return channel != null;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Connect to daemon of current repository. Returns null if no socket file exists. */
+    static SocketChannel connect() throws IOException {
+        if (!SOCKET.exists()) {
+            return null;
+        }
+        return SocketChannel.open(UnixDomainSocketAddress.of(SOCKET.toPath()));
+    }
+
+    /**
+     * Send command to daemon and copy its output to given streams. Returns exit code of command.
+     * Throws IOException if daemon is not running.
+     */
+    static int send(String[] args, OutputStream out, OutputStream err) throws IOException {
+        SocketChannel channel = connect();
+        if (channel == null) {
+            throw new IOException("No daemon is running.");
+        }
+        try (channel) {
+            DataOutputStream request = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+
+            DataInputStream reply = new DataInputStream(Channels.newInputStream(channel));
+            byte[] buffer = new byte[8192];
+            while (true) {
+                byte stream = reply.readByte();
+                int length = reply.readInt();
+                if (stream == EXIT) {
+                    out.flush();
+                    err.flush();
+                    return length;
+                }
+                OutputStream target = stream == ERR ? err : out;
+                while (length > 0) {
+                    int n = reply.read(buffer, 0, Math.min(length, buffer.length));
+                    if (n < 0) {
+                        throw new IOException("Daemon closed connection.");
+                    }
+                    target.write(buffer, 0, n);
+                    length -= n;
+                }
+            }
+        }
+    }
+
+    /** Run single command sent by client. Returns true if client asked daemon to stop. */
+    private static boolean handle(SocketChannel client) throws IOException {
+        DataInputStream request = new DataInputStream(Channels.newInputStream(client));
+        String[] args = new String[request.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = request.readUTF();
+        }
+
+        DataOutputStream reply = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+        if (args.length == 2 && args[0].equals("daemon") && args[1].equals("stop")) {
+            reply.writeByte(EXIT);
+            reply.writeInt(0);
+            reply.flush();
+            return true;
+        }
+
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FrameStream(reply, OUT)));
+        PrintStream err = new PrintStream(new BufferedOutputStream(new FrameStream(reply, ERR)));
+        System.setOut(out);
+        System.setErr(err);
+        int exitCode = 0;
+        try {
+            refresh();
+            // Note: commands reading standard input of client cannot run in daemon
+            if (args.length > 0 && LOCAL_COMMANDS.contains(args[0])) {
+                Main.errorMessage();
+            } else {
+                Main.main(args);
+            }
+        } catch (Exception | Error excp) {
+            excp.printStackTrace(err);
+            exitCode = 1;
+        } finally {
+            _stamp = stamp();
+        }
+        out.flush();
+        err.flush();
+        reply.writeByte(EXIT);
+        reply.writeInt(exitCode);
+        reply.flush();
+        return false;
+    }
+
+    /** Drop loaded repository state if another process changed it since last command */
+    private static void refresh() {
+        if (!stamp().equals(_stamp)) {
+            Pack.reload();
+            Config.reload();
+            ObjectCache.clear();
+            CommitGraph.reload();
+            ChangedPaths.reload();
+        }
+    }
+
+    /** Get summary of files whose contents are kept loaded between commands */
+    private static String stamp() {
+        return Main.GITLET.exists() + ":" + Main.COMMIT_GRAPH.length() + ":" + Main.CONFIG.lastModified()
+                + ":" + Main.PACK.lastModified() + ":" + Main.COMMITS.lastModified();
+    }
+
+    /* Output stream that sends each write to client as a frame of given stream */
+    private static class FrameStream extends OutputStream {
+        DataOutputStream _reply;    // Reply sent to client
+        byte _stream;               // Stream of frames
+
+        /** Constructor */
+        FrameStream(DataOutputStream reply, byte stream) {
+            _reply = reply;
+            _stream = stream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > 0) {
+                _reply.writeByte(_stream);
+                _reply.writeInt(length);
+                _reply.write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            _reply.flush();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/* Class for diff command, and for comparing snapshots of files in merge, status and history commands. Snapshots are
+ * compared with a merge-join over entries sorted by name: both sides are walked in order once, so each entry is
+ * visited once without looking it up in the other side. Trees are compared directory by directory, and
+ * subdirectories with the same tree identifier on both sides are skipped without being read, so comparing two
+ * commits costs O(c) w.r.t entries of directories along changed paths.
+ * Note: changes are visited in order of path, the same order for trees and for flat snapshots of files.
+ */
+public class Diff {
+    static final String ADDED = "A";            // Status of file that only exists in new snapshot
+    static final String MODIFIED = "M";         // Status of file with different contents in new snapshot
+    static final String DELETED = "D";          // Status of file that only exists in old snapshot
+    static final int BINARY_CHECK = 8000;       // Number of first bytes checked for zero byte of binary file
+
+    /** Interface for receiving changed files in order of path */
+    interface Visitor {
+        /** Visit file whose SHA1 hash changed from OLDID to NEWID. Identifier is null on side without the file. */
+        void visit(String path, String oldID, String newID);
+    }
+
+    /**
+     * Diff command. Prints status and path of every changed file, in order of path:
+     *   diff                       Working directory changes not staged for commit
+     *   diff --cached              Changes staged for next commit
+     *   diff [commit]              Changes in working directory since given commit
+     *   diff [commit] [commit]     Changes between two commits
+     * Commits are given by (possibly abbreviated) identifier or by branch name. Only files tracked in HEAD commit or
+     * staged are compared with working directory. Options -p (or --patch) and -U[n] print changes of every file as
+     * unified diff with n lines of context (default 3) instead.
+     */
+    static void apply(String... args) {
+        int context = -1;
+        int first = 0;
+        for (; first < args.length && args[first].startsWith("-") && !args[first].equals("--cached"); first++) {
+            if (args[first].equals("-p") || args[first].equals("--patch")) {
+                context = Math.max(context, LineDiff.DEFAULT_CONTEXT);
+            } else if (args[first].matches("-U[0-9]{1,9}")) {
+                context = Integer.parseInt(args[first].substring(2));
+            } else {
+                Main.errorMessage();
+                return;
+            }
+        }
+        args = Arrays.copyOfRange(args, first, args.length);
+        if (args.length > 2 || args.length > 0 && args[0].equals("--cached") && args.length != 1) {
+            Main.errorMessage();
+            return;
+        }
+
+        Stage stage = Stage.read();
+        Patch patch = new Patch(context);
+        if (args.length == 1 && args[0].equals("--cached")) {
+            maps(Commit.getCurrentBlobs(), indexFiles(stage), patch);
+            patch.flush();
+            return;
+        }
+        String[] trees = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            Commit commit = Commit.getByID(resolve(args[i]));
+            if (commit == null) {
+                System.out.print("No commit with that id exists.");
+                return;
+            }
+            trees[i] = commit._tree;
+        }
+        if (args.length == 2) {
+            trees(trees[0], trees[1], patch);
+            patch.flush();
+            return;
+        }
+        HashMap<String, String> index = indexFiles(stage);
+        HashMap<String, String> old = args.length == 0 ? index : Tree.getBlobs(trees[0]);
+        // Note: hashes of working files may not be stored as blobs, so new contents are read from working files
+        patch._isWorking = true;
+        maps(old, workingFiles(stage, index, false), patch);
+        patch.flush();
+        // Save stat data of files hashed while comparing
+        if (stage._isStatsChanged) {
+            Stage.write(stage);
+        }
+    }
+
+    /** Get commit identifier from branch name or (possibly abbreviated) commit identifier */
+    private static String resolve(String name) {
+        if (Utils.join(Main.BRANCH, name).isFile()) {
+            return Branch.read(name);
+        }
+        return ObjectStore.resolve(name, Main.COMMITS);
+    }
+
+    /* Visitor printing status and path of changed files, or their line changes as unified diff */
+    private static class Patch implements Visitor {
+        int _context;                           // Lines of context around changes, or -1 to print status only
+        boolean _isWorking;                     // Whether new contents are read from working directory
+        OutputStream _out;                      // Buffered standard output
+
+        /** Constructor */
+        Patch(int context) {
+            _context = context;
+            _out = new BufferedOutputStream(System.out, Blob.CHUNK_SIZE);
+        }
+
+        @Override
+        public void visit(String path, String oldID, String newID) {
+            try {
+                if (_context < 0) {
+                    write(_out, status(oldID, newID) + "\t" + path + "\n");
+                    return;
+                }
+                byte[] old = Blob.readContents(oldID);
+                byte[] contents = _isWorking && newID != null ? Utils.readContents(Utils.join(Main.USERDIR, path))
+                        : Blob.readContents(newID);
+                write(_out, "diff --git a/" + path + " b/" + path + "\n");
+                if (isBinary(old) || isBinary(contents)) {
+                    write(_out, "Binary files " + (oldID == null ? "/dev/null" : "a/" + path) + " and "
+                            + (newID == null ? "/dev/null" : "b/" + path) + " differ\n");
+                    return;
+                }
+                write(_out, "--- " + (oldID == null ? "/dev/null" : "a/" + path) + "\n");
+                write(_out, "+++ " + (newID == null ? "/dev/null" : "b/" + path) + "\n");
+                new LineDiff(old, contents).writeHunks(_out, _context);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+
+        /** Write buffered output to standard output */
+        void flush() {
+            try {
+                _out.flush();
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Check if contents are binary: contents with a zero byte in their first block, as in Git */
+    static boolean isBinary(byte[] contents) {
+        for (int i = 0; i < Math.min(contents.length, BINARY_CHECK); i++) {
+            if (contents[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Write text to output */
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Get status of file changed from OLDID to NEWID */
+    static String status(String oldID, String newID) {
+        return oldID == null ? ADDED : newID == null ? DELETED : MODIFIED;
+    }
+
+    /** Get files of next commit {Path of file: SHA1 hash}: files of HEAD commit updated with given stage */
+    static HashMap<String, String> indexFiles(Stage stage) {
+        HashMap<String, String> files = Commit.getCurrentBlobs();
+        files.putAll(stage._additions);
+        files.keySet().removeAll(stage._deletions.keySet());
+        return files;
+    }
+
+    /**
+     * Get files of working directory {Path of file: SHA1 hash}. Files in TRACKED are hashed using stat data of given
+     * stage. Other files are left out, or listed with an empty hash if UNTRACKED is true, so they are never read.
+     */
+    static HashMap<String, String> workingFiles(Stage stage, Map<String, String> tracked, boolean untracked) {
+        HashMap<String, String> files = new HashMap<>();
+        for (String path : Utils.getWorkingFiles()) {
+            String sha1 = tracked.containsKey(path) ? stage.hashFile(path) : untracked ? "" : null;
+            if (sha1 != null) {
+                files.put(path, sha1);
+            }
+        }
+        return files;
+    }
+
+    /** Visit files changed between two trees, in order of path. A null tree identifier stands for a tree
+     *  with no files. */
+    static void trees(String oldID, String newID, Visitor visitor) {
+        trees(oldID, newID, Tree::read, visitor);
+    }
+
+    /** Visit files changed between two trees read with given reader, in order of path */
+    static void trees(String oldID, String newID, Function<String, Tree> reader, Visitor visitor) {
+        if (oldID == null || !oldID.equals(newID)) {
+            joinTrees("", Tree.read(oldID, reader), Tree.read(newID, reader), reader, visitor);
+        }
+    }
+
+    /** Visit files changed between given trees, by path from given prefix */
+    private static void joinTrees(String prefix, Tree old, Tree tree, Function<String, Tree> reader,
+                                  Visitor visitor) {
+        ArrayList<String> oldNames = sortedNames(old);
+        ArrayList<String> newNames = sortedNames(tree);
+        int i = 0;
+        int j = 0;
+        while (i < oldNames.size() || j < newNames.size()) {
+            int order = i == oldNames.size() ? 1 : j == newNames.size() ? -1
+                    : oldNames.get(i).compareTo(newNames.get(j));
+            String name = order <= 0 ? oldNames.get(i) : newNames.get(j);
+            String oldID = order <= 0 ? entry(old, name) : null;
+            String newID = order >= 0 ? entry(tree, name) : null;
+            i += order <= 0 ? 1 : 0;
+            j += order >= 0 ? 1 : 0;
+            if (oldID != null && oldID.equals(newID)) {
+                // Note: unchanged file or subdirectory is skipped, and unchanged subdirectory is never read
+                continue;
+            } else if (name.endsWith("/")) {
+                joinTrees(prefix + name, Tree.read(oldID, reader), Tree.read(newID, reader), reader, visitor);
+            } else {
+                visitor.visit(prefix + name, oldID, newID);
+            }
+        }
+    }
+
+    /** Get names of entries of given tree in sorted order. Names of subdirectories end with '/', so they are sorted
+     *  the same way as paths of files inside them. */
+    private static ArrayList<String> sortedNames(Tree tree) {
+        ArrayList<String> names = new ArrayList<>(tree._blobList.size() + tree._trees.size());
+        names.addAll(tree._blobList.keySet());
+        for (String name : tree._trees.keySet()) {
+            names.add(name + "/");
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /** Get identifier of file or subdirectory (name ending with '/') of given tree */
+    private static String entry(Tree tree, String name) {
+        if (name.endsWith("/")) {
+            return tree._trees.get(name.substring(0, name.length() - 1));
+        }
+        return tree._blobList.get(name);
+    }
+
+    /** Visit files changed between two snapshots of files {Path of file: SHA1 hash}, in order of path */
+    static void maps(Map<String, String> old, Map<String, String> files, Visitor visitor) {
+        Iterator<Map.Entry<String, String>> oldEntries = sorted(old).entrySet().iterator();
+        Iterator<Map.Entry<String, String>> newEntries = sorted(files).entrySet().iterator();
+        Map.Entry<String, String> oldEntry = oldEntries.hasNext() ? oldEntries.next() : null;
+        Map.Entry<String, String> newEntry = newEntries.hasNext() ? newEntries.next() : null;
+        while (oldEntry != null || newEntry != null) {
+            int order = oldEntry == null ? 1 : newEntry == null ? -1 : oldEntry.getKey().compareTo(newEntry.getKey());
+            if (order < 0) {
+                visitor.visit(oldEntry.getKey(), oldEntry.getValue(), null);
+            } else if (order > 0) {
+                visitor.visit(newEntry.getKey(), null, newEntry.getValue());
+            } else if (!oldEntry.getValue().equals(newEntry.getValue())) {
+                visitor.visit(oldEntry.getKey(), oldEntry.getValue(), newEntry.getValue());
+            }
+            if (order <= 0) {
+                oldEntry = oldEntries.hasNext() ? oldEntries.next() : null;
+            }
+            if (order >= 0) {
+                newEntry = newEntries.hasNext() ? newEntries.next() : null;
+            }
+        }
+    }
+
+    /** Get given files sorted by path, without copying files that are already sorted */
+    private static SortedMap<String, String> sorted(Map<String, String> files) {
+        if (files instanceof SortedMap && ((SortedMap<String, String>) files).comparator() == null) {
+            return (SortedMap<String, String>) files;
+        }
+        return new TreeMap<>(files);
+    }
+}
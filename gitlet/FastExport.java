@@ -0,0 +1,175 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/* Class for fast-export command. Writes history of given branches to standard output in the format read by
+ * fast-import (see FastImport), without checking out any commit. Parents are written before their children, each
+ * commit lists only files changed from its first parent, and each blob is written once and then referred to by its
+ * mark. Blob contents are streamed from the object store, so memory used does not grow with file sizes.
+ * Note: initial commit exists in every repository, so it is referred to by its identifier instead of exported.
+ */
+public class FastExport {
+    OutputStream _out;                          // Output stream of exported history
+    HashMap<String, Integer> _marks;            // {Identifier of exported blob or commit: Mark number}
+    HashMap<String, Tree> _trees;               // Trees read for commit being exported {Identifier: Tree}
+    HashMap<String, Tree> _lastTrees;           // Trees read for last exported commit {Identifier: Tree}
+
+    /** Constructor */
+    FastExport(OutputStream out) {
+        _out = new BufferedOutputStream(out, Blob.CHUNK_SIZE);
+        _marks = new HashMap<>();
+        _trees = new HashMap<>();
+        _lastTrees = new HashMap<>();
+    }
+
+    /** Export given branches to standard output. Every branch is exported if no branch is given. */
+    static void apply(List<String> branches) throws IOException {
+        if (branches.isEmpty()) {
+            branches = new ArrayList<>(List.of(Main.BRANCH.list()));
+            Collections.sort(branches);
+        }
+        for (String branch : branches) {
+            if (!Utils.join(Main.BRANCH, branch).isFile()) {
+                System.out.print("A branch with that name does not exist.");
+                return;
+            }
+        }
+        new FastExport(System.out).run(branches);
+    }
+
+    /** Write history of given branches, then move each branch to its tip */
+    void run(List<String> branches) throws IOException {
+        // Note: each commit is exported on first branch whose history contains it
+        HashMap<String, String> commitBranches = new HashMap<>();   // {Commit identifier: Branch name}
+        ArrayList<String> commits = new ArrayList<>();
+        RevWalk walk = new RevWalk(RevWalk.Order.TOPO);
+        for (String branch : branches) {
+            walk.start(Branch.read(branch));
+            while (walk.hasNext()) {
+                String id = walk.nextID();
+                if (!id.equals(Commit.zeroSha1)) {
+                    commitBranches.put(id, branch);
+                    commits.add(id);
+                }
+            }
+        }
+
+        // Note: commits are sorted by generation number, so parents are written before children
+        CommitGraph graph = CommitGraph.get();
+        commits.sort((a, b) -> Integer.compare(graph._generations[graph.row(a)], graph._generations[graph.row(b)]));
+        for (String id : commits) {
+            writeCommit(Commit.getByID(id), commitBranches.get(id));
+        }
+        for (String branch : branches) {
+            write("reset " + branch + "\nfrom " + ref(Branch.read(branch)) + "\n\n");
+        }
+        write("done\n");
+        _out.flush();
+    }
+
+    /** Write commit with blobs it adds, listing files changed from its first parent */
+    private void writeCommit(Commit commit, String branch) throws IOException {
+        // Note: only trees along changed paths are compared, and first parent is usually the commit exported just
+        // before, so its trees are reused
+        Commit parent = Commit.getByID(commit.getParent());
+        TreeMap<String, String> changes = Tree.changes(parent != null ? parent._tree : null, commit._tree,
+                this::readTree);
+        _lastTrees = _trees;
+        _trees = new HashMap<>();
+
+        // Write blobs that were not written yet
+        for (String sha1 : changes.values()) {
+            if (sha1 != null && !_marks.containsKey(sha1)) {
+                writeBlob(sha1);
+            }
+        }
+
+        StringBuilder header = new StringBuilder();
+        _marks.put(commit._sha1, _marks.size() + 1);
+        header.append("commit ").append(branch).append("\nmark ").append(ref(commit._sha1)).append("\n");
+        long time = CommitGraph.parseTime(commit._time);
+        if (time != 0) {
+            String zone = commit._time.substring(commit._time.lastIndexOf(" ") + 1);
+            header.append("time ").append(time).append(" ").append(zone).append("\n");
+        }
+        write(header.toString());
+        writeData(commit._logMessage.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < commit._parents.size(); i++) {
+            lines.append(i == 0 ? "from " : "merge ").append(ref(commit._parents.get(i))).append("\n");
+        }
+        // Note: removals are written before modifications, as in Git, since removing a path also drops earlier
+        // changes under it (ex: file x replaced by directory x/ is written as "D x" then "M ... x/y")
+        for (Map.Entry<String, String> entry : changes.entrySet()) {
+            if (entry.getValue() == null) {
+                lines.append("D ").append(entry.getKey()).append("\n");
+            }
+        }
+        for (Map.Entry<String, String> entry : changes.entrySet()) {
+            if (entry.getValue() != null) {
+                lines.append("M ").append(ref(entry.getValue())).append(" ").append(entry.getKey()).append("\n");
+            }
+        }
+        write(lines.append("\n").toString());
+    }
+
+    /** Read tree with given identifier, reusing trees read for last exported commit. Note: trees are decoded
+     *  without object cache, since each tree is read about twice and keeping them would only grow memory used by
+     *  the export. */
+    private Tree readTree(String id) {
+        Tree tree = _lastTrees.get(id);
+        if (tree == null) {
+            byte[] contents = ObjectStore.read(id, Main.TREE);
+            tree = contents != null ? Tree.decode(id, contents) : null;
+        }
+        if (tree != null) {
+            _trees.put(id, tree);
+        }
+        return tree;
+    }
+
+    /** Write blob with given identifier. Note: contents are read twice, first to find their length. */
+    private void writeBlob(String id) throws IOException {
+        long length = 0;
+        try (InputStream in = Blob.openStream(id)) {
+            for (long n = in.skip(Long.MAX_VALUE); n > 0; n = in.skip(Long.MAX_VALUE)) {
+                length += n;
+            }
+        }
+        _marks.put(id, _marks.size() + 1);
+        write("blob\nmark " + ref(id) + "\ndata " + length + "\n");
+        try (InputStream in = Blob.openStream(id)) {
+            in.transferTo(_out);
+        }
+        write("\n");
+    }
+
+    /** Write data block with given contents */
+    private void writeData(byte[] contents) throws IOException {
+        write("data " + contents.length + "\n");
+        _out.write(contents);
+        write("\n");
+    }
+
+    /** Get mark of exported object, or identifier of object that was not exported */
+    private String ref(String id) {
+        Integer mark = _marks.get(id);
+        return mark != null ? ":" + mark : id;
+    }
+
+    /** Write text to output */
+    private void write(String text) throws IOException {
+        _out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
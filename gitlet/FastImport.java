@@ -0,0 +1,316 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+
+/* Class for fast-import command. Reads blobs and commits from standard input and writes them straight into a new
+ * pack, without reading or changing working directory, stage or HEAD. Branches are updated once every object is
+ * written, so branches never point to missing commits.
+ *
+ * Input is a sequence of commands (lines starting with '#' are skipped):
+ *   blob                                    Blob with contents from data block
+ *   mark :<number>
+ *   data <length>
+ *   <length bytes>
+ *
+ *   commit <branch>                         Commit on branch, whose first parent is tip of branch unless given
+ *   mark :<number>                          (optional)
+ *   time <seconds since epoch> <zone>       (optional, ex: 1600000000 -0700; default is now)
+ *   data <length>                           Commit message
+ *   <length bytes>
+ *   from <:mark | commit id>                (optional) First parent, whose files the commit starts from
+ *   merge <:mark | commit id>               (optional) Merged-in parent
+ *   M <:mark | blob id> <path>              (any number) File added or changed, in subdirectories if path has '/'
+ *   D <path>                                (any number) File or directory removed
+ *   deleteall                               (optional) Start from no files
+ *
+ *   reset <branch>                          Move branch to given commit
+ *   from <:mark | commit id>
+ *
+ *   done                                    (optional) End of input
+ * Note: commits without parent on a new branch are children of the initial commit, as in every gitlet repository.
+ */
+public class FastImport {
+    InputStream _in;                            // Input stream of commands
+    String _line;                               // Current command line, or null at end of input
+    Pack.Writer _pack;                          // Pack receiving imported objects
+    HashMap<String, String> _marks;             // {Mark: Object identifier}
+    TreeMap<String, String> _branches;          // {Branch name: Tip commit identifier} of updated branches
+    ArrayList<Commit> _commits;                 // Imported commits
+    String _lastCommit;                         // Identifier of last imported commit
+    Tree _lastTree;                             // Tree of last imported commit
+
+    /** Constructor */
+    FastImport(InputStream in) {
+        _in = new BufferedInputStream(in, Blob.CHUNK_SIZE);
+        _marks = new HashMap<>();
+        _branches = new TreeMap<>();
+        _commits = new ArrayList<>();
+    }
+
+    /** Import objects read from standard input */
+    static void apply() throws IOException {
+        new FastImport(System.in).run();
+    }
+
+    /** Read every command, write pack and update branches */
+    void run() throws IOException {
+        _pack = new Pack.Writer();
+        try {
+            readLine();
+            while (_line != null && !_line.equals("done")) {
+                if (_line.isEmpty() || _line.startsWith("#")) {
+                    readLine();
+                } else if (_line.equals("blob")) {
+                    readBlob();
+                } else if (_line.startsWith("commit ")) {
+                    readCommit(_line.substring("commit ".length()));
+                } else if (_line.startsWith("reset ")) {
+                    readReset(_line.substring("reset ".length()));
+                } else {
+                    throw Utils.error("Unknown fast-import command: %s", _line);
+                }
+            }
+        } catch (IOException | RuntimeException excp) {
+            _pack.abort();
+            throw excp;
+        }
+        if (_pack._entries.isEmpty()) {
+            _pack.abort();
+        } else {
+            _pack.finish();
+            Pack.reload();
+        }
+
+        // Note: branches are updated after pack is in place
+        MessageIndex.add(_commits);
+        for (Map.Entry<String, String> branch : _branches.entrySet()) {
+            Branch.update(branch.getValue(), branch.getKey(), Main.BRANCH);
+        }
+    }
+
+    /** Read blob command */
+    private void readBlob() throws IOException {
+        readLine();
+        String mark = readMark();
+        byte[] contents = readData();
+        String id = Utils.sha1((Object) contents);
+        if (!_pack.contains(id, Main.BLOB) && !ObjectStore.contains(id, Main.BLOB)) {
+            _pack.add(id, Main.BLOB, Blob.compress(contents));
+        }
+        if (mark != null) {
+            _marks.put(mark, id);
+        }
+    }
+
+    /** Read commit command for given branch */
+    private void readCommit(String branch) throws IOException {
+        checkBranchName(branch);
+        readLine();
+        String mark = readMark();
+        String time = Utils.createTime();
+        if (_line != null && _line.startsWith("time ")) {
+            String[] fields = _line.split(" ");
+            if (fields.length != 3) {
+                throw Utils.error("Invalid time: %s", _line);
+            }
+            time = Utils.createTime(Long.parseLong(fields[1]), fields[2]);
+            readLine();
+        }
+        String message = new String(readData(), StandardCharsets.UTF_8);
+
+        // Find parents
+        ArrayList<String> parents = new ArrayList<>();
+        if (_line != null && _line.startsWith("from ")) {
+            parents.add(commitID(_line.substring("from ".length())));
+            readLine();
+        } else {
+            parents.add(tip(branch));
+        }
+        while (_line != null && _line.startsWith("merge ")) {
+            parents.add(commitID(_line.substring("merge ".length())));
+            readLine();
+        }
+
+        // Collect file changes to tree of first parent {Path: SHA1 hash, or null if removed}
+        Tree base = treeOf(parents.get(0));
+        HashMap<String, String> changes = new HashMap<>();
+        while (_line != null) {
+            if (_line.startsWith("M ")) {
+                String[] fields = _line.split(" ", 3);
+                if (fields.length != 3) {
+                    throw Utils.error("Invalid file change: %s", _line);
+                }
+                changes.put(checkFileName(fields[2]), blobID(fields[1]));
+            } else if (_line.startsWith("D ")) {
+                String path = checkFileName(_line.substring("D ".length()));
+                // Note: removing a directory also drops earlier changes to files inside it
+                changes.keySet().removeIf(name -> name.startsWith(path + "/"));
+                changes.put(path, null);
+            } else if (_line.equals("deleteall")) {
+                base = new Tree(new HashMap<>());
+                changes.clear();
+            } else {
+                break;
+            }
+            readLine();
+        }
+
+        // Write trees along changed paths and commit into pack
+        Tree tree = Tree.update(base, changes, id -> readObject(id, Main.TREE, Tree::decode));
+        ArrayList<Tree> newTrees = new ArrayList<>(tree._newTrees);
+        newTrees.add(tree);
+        for (Tree newTree : newTrees) {
+            if (!_pack.contains(newTree._sha1, Main.TREE) && !ObjectStore.contains(newTree._sha1, Main.TREE)) {
+                _pack.add(newTree._sha1, Main.TREE, newTree.encode());
+            }
+        }
+        Commit commit = new Commit(message, parents, tree._sha1, time, branch);
+        if (!_pack.contains(commit._sha1, Main.COMMITS) && !ObjectStore.contains(commit._sha1, Main.COMMITS)) {
+            _pack.add(commit._sha1, Main.COMMITS, commit.encode());
+            _commits.add(commit);
+        }
+        if (mark != null) {
+            _marks.put(mark, commit._sha1);
+        }
+        _branches.put(branch, commit._sha1);
+        _lastCommit = commit._sha1;
+        _lastTree = tree;
+    }
+
+    /** Read reset command for given branch */
+    private void readReset(String branch) throws IOException {
+        checkBranchName(branch);
+        readLine();
+        if (_line == null || !_line.startsWith("from ")) {
+            throw Utils.error("Missing from after reset %s", branch);
+        }
+        _branches.put(branch, commitID(_line.substring("from ".length())));
+        readLine();
+    }
+
+    /** Get tree of given commit. Tree of last imported commit is reused, since a commit usually continues
+     *  from the commit imported before it. */
+    private Tree treeOf(String commitID) {
+        if (commitID.equals(_lastCommit)) {
+            return _lastTree;
+        }
+        Commit commit = readObject(commitID, Main.COMMITS, Commit::decode);
+        if (commit._tree == null) {
+            return new Tree(new HashMap<>());
+        }
+        return readObject(commit._tree, Main.TREE, Tree::decode);
+    }
+
+    /** Read object from pack being written, or from repository if object was stored before import */
+    private <T> T readObject(String id, File location, BiFunction<String, byte[], T> decoder) {
+        byte[] contents;
+        try {
+            contents = _pack.read(id, location);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        T object = contents != null ? decoder.apply(id, contents) : ObjectStore.readObject(id, location, decoder);
+        if (object == null) {
+            throw Utils.error("Missing object: %s", id);
+        }
+        return object;
+    }
+
+    /** Get tip commit of given branch, or initial commit if branch does not exist yet */
+    private String tip(String branch) {
+        String tip = _branches.get(branch);
+        if (tip == null && Utils.join(Main.BRANCH, branch).isFile()) {
+            tip = Branch.read(branch);
+        }
+        return tip != null ? tip : Commit.zeroSha1;
+    }
+
+    /** Get commit identifier from mark or (possibly abbreviated) commit identifier */
+    private String commitID(String ref) {
+        String id = ref.startsWith(":") ? _marks.get(ref) : ObjectStore.resolve(ref, Main.COMMITS);
+        if (id == null || !_pack.contains(id, Main.COMMITS) && !ObjectStore.contains(id, Main.COMMITS)) {
+            throw Utils.error("No commit with that id exists: %s", ref);
+        }
+        return id;
+    }
+
+    /** Get blob identifier from mark or blob identifier */
+    private String blobID(String ref) {
+        String id = ref.startsWith(":") ? _marks.get(ref) : ref;
+        if (id == null || id.length() != Utils.UID_LENGTH
+                || !_pack.contains(id, Main.BLOB) && !ObjectStore.contains(id, Main.BLOB)) {
+            throw Utils.error("No blob with that id exists: %s", ref);
+        }
+        return id;
+    }
+
+    /** Read optional mark line. Returns mark, or null if current line is not a mark. */
+    private String readMark() throws IOException {
+        if (_line != null && _line.startsWith("mark :")) {
+            String mark = _line.substring("mark ".length());
+            readLine();
+            return mark;
+        }
+        return null;
+    }
+
+    /** Read data block. Note: a single new line after data is skipped. */
+    private byte[] readData() throws IOException {
+        if (_line == null || !_line.startsWith("data ")) {
+            throw Utils.error("Expected data: %s", _line);
+        }
+        int length = Integer.parseInt(_line.substring("data ".length()));
+        byte[] data = _in.readNBytes(length);
+        if (data.length != length) {
+            throw Utils.error("Unexpected end of input.");
+        }
+        _in.mark(1);
+        if (_in.read() != '\n') {
+            _in.reset();
+        }
+        readLine();
+        return data;
+    }
+
+    /** Read next line of input into current line. Current line is null at end of input. */
+    private void readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b = _in.read();
+        if (b < 0) {
+            _line = null;
+            return;
+        }
+        while (b >= 0 && b != '\n') {
+            line.write(b);
+            b = _in.read();
+        }
+        _line = line.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Check branch name can be stored as branch file */
+    private static void checkBranchName(String branch) {
+        if (branch.isEmpty() || branch.contains("/") || branch.startsWith(".")) {
+            throw Utils.error("Invalid branch name: %s", branch);
+        }
+    }
+
+    /** Check path names a file in working directory or one of its subdirectories */
+    private static String checkFileName(String name) {
+        for (String part : name.split("/", -1)) {
+            if (part.isEmpty() || part.equals(".") || part.equals("..")) {
+                throw Utils.error("Invalid file name: %s", name);
+            }
+        }
+        return name;
+    }
+}
@@ -0,0 +1,83 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/* Class for stat data of file in working directory, saved in the index with the hash of the file's contents.
+ * A file whose size, modification time and inode still match its saved stat data is not hashed again. */
+public class FileStat {
+    long _size;         // Size of file in bytes
+    long _mtime;        // Modification time in nanoseconds (Note: 0 marks stat data that must not be trusted)
+    long _inode;        // Inode number, or 0 if file system does not report inodes
+    String _sha1;       // Hash of file contents when stat data was read
+
+    /** Constructor */
+    FileStat(long size, long mtime, long inode, String sha1) {
+        _size = size;
+        _mtime = mtime;
+        _inode = inode;
+        _sha1 = sha1;
+    }
+
+    /** Read stat data of given file. Returns null if file does not exist or is not a regular file. */
+    static FileStat of(File file) {
+        try {
+            // Note: inode is read together with size and time where supported, using a single stat call
+            Map<String, Object> unix = Files.readAttributes(file.toPath(), "unix:size,lastModifiedTime,ino,mode",
+                    LinkOption.NOFOLLOW_LINKS);
+            if (((int) unix.get("mode") & 0170000) != 0100000) {
+                return null;
+            }
+            return new FileStat((long) unix.get("size"), nanos((FileTime) unix.get("lastModifiedTime")),
+                    (long) unix.get("ino"), null);
+        } catch (UnsupportedOperationException | IllegalArgumentException excp) {
+            return basic(file);
+        } catch (NoSuchFileException excp) {
+            return null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Read stat data of given file on file systems without unix attributes */
+    private static FileStat basic(File file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return new FileStat(attributes.size(), nanos(attributes.lastModifiedTime()), 0, null);
+        } catch (NoSuchFileException excp) {
+            return null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Get modification time of given file in nanoseconds */
+    static long mtime(File file) {
+        try {
+            return nanos(Files.getLastModifiedTime(file.toPath()));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Convert file time to nanoseconds */
+    private static long nanos(FileTime time) {
+        return time.to(TimeUnit.NANOSECONDS);
+    }
+
+    /** Check if saved stat data matches current stat data of file */
+    boolean matches(FileStat current) {
+        return _mtime != 0 && _size == current._size && _mtime == current._mtime && _inode == current._inode;
+    }
+}
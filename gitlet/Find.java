@@ -1,6 +1,5 @@
 package gitlet;
 
-import java.io.File;
 import java.util.ArrayList;
 
 /* Class for find command */
@@ -10,16 +9,8 @@ public class Find {
      * Find Commit with given message
      */
     static void find(String message) {
-        ArrayList<String> commits = new ArrayList<>();
-        File[] objectList = Main.COMMITS.listFiles();
-        for (int i = 0; i < objectList.length; i++) {
-            for (File inner : objectList[i].listFiles()) {
-                Commit file = Utils.readObject(inner, Commit.class);
-                if (file._logMessage.equals(message)) {
-                    commits.add(file._sha1);
-                }
-            }
-        }
+        // Note: commits are looked up in message index instead of reading every commit
+        ArrayList<String> commits = new ArrayList<>(MessageIndex.find(message));
         if (commits.isEmpty()) {
             System.out.print("Found no commit with that message.");
         } else {
@@ -17,12 +17,21 @@ public class Init {
             return;
         }
 
+        // Close packs, settings, cached objects, commit-graph and changed-path filters of any previously opened repository
+        Pack.reload();
+        Config.reload();
+        ObjectCache.clear();
+        CommitGraph.reload();
+        ChangedPaths.reload();
+
         // Create necessary folders (.gitlet, objects, commits, etc.)
         Main.GITLET.mkdir();
         Main.OBJECTS.mkdir();
         Main.COMMITS.mkdir();
         Main.BLOB.mkdir();
         Main.TREE.mkdir();
+        Main.PACK.mkdir();
+        Main.MESSAGES.mkdir();
         File helper = Utils.join(Main.GITLET, "refs");
         File heads = Utils.join(helper, "heads");
         helper.mkdir();
@@ -0,0 +1,459 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/* Class for line-level diff of two file versions. Contents are split into lines directly in their byte arrays, and
+ * every distinct line is interned as a number, so lines are compared by number instead of by contents. Lines that
+ * occur in only one version are changed, and the other lines are matched in three steps on each region:
+ *   1. Common first and last lines are matched.
+ *   2. Large regions are split at lines that occur exactly once in both versions (patience diff), using the longest
+ *      run of such lines in increasing order, and each gap between them is diffed again.
+ *   3. Remaining regions are diffed with Myers' O(ND) algorithm in linear space. Searches whose cost grows above
+ *      MAX_COST take the path to the furthest point reached and go on from there, so generated files with many
+ *      changes stay fast at the price of a slightly longer diff.
+ * Note: a line includes its ending new line, so a last line without new line differs from the same line with one.
+ */
+public class LineDiff {
+    static final int DEFAULT_CONTEXT = 3;       // Default number of unchanged lines shown around changes
+    static final int MIN_PATIENCE = 256;        // Lines in region above which region is split at unique lines
+    static final int MAX_COST = 256;            // Edit distance above which Myers' search stops at furthest point
+
+    byte[] _a;                                  // Contents of old version
+    byte[] _b;                                  // Contents of new version
+    int[] _aStarts;                             // Start offset per line of old version, followed by contents length
+    int[] _bStarts;                             // Start offset per line of new version, followed by contents length
+    int[] _aLines;                              // Interned line number per compared line of old version
+    int[] _bLines;                              // Interned line number per compared line of new version
+    int[] _aIndex;                              // Line of old version per compared line
+    int[] _bIndex;                              // Line of new version per compared line
+    boolean[] _deleted;                         // Whether each line of old version is deleted
+    boolean[] _inserted;                        // Whether each line of new version is inserted
+    int[] _counts;                              // Occurrences of each interned line in region (patience step)
+    int[] _positions;                           // Position of each interned line in region (patience step)
+    int[][] _trace;                             // Forward search per step, up to cost limit (Myers step)
+
+    /** Constructor. Finds lines deleted from old version and lines inserted into new version. */
+    LineDiff(byte[] a, byte[] b) {
+        _a = a;
+        _b = b;
+        _aStarts = lineStarts(a);
+        _bStarts = lineStarts(b);
+        HashMap<Line, Integer> interned = new HashMap<>();
+        int[] aLines = intern(a, _aStarts, interned);
+        int[] bLines = intern(b, _bStarts, interned);
+        _deleted = new boolean[aLines.length];
+        _inserted = new boolean[bLines.length];
+
+        // Note: a line that does not occur in the other version is changed by every edit script, so it is marked
+        // first and only the other lines are compared. Diff stays minimal, and versions with few common lines
+        // (ex: generated files rewritten) are diffed in time linear w.r.t their size.
+        boolean[] isInA = new boolean[interned.size()];
+        boolean[] isInB = new boolean[interned.size()];
+        for (int line : aLines) {
+            isInA[line] = true;
+        }
+        for (int line : bLines) {
+            isInB[line] = true;
+        }
+        _aIndex = comparedLines(aLines, isInB, _deleted);
+        _bIndex = comparedLines(bLines, isInA, _inserted);
+        _aLines = new int[_aIndex.length];
+        for (int i = 0; i < _aIndex.length; i++) {
+            _aLines[i] = aLines[_aIndex[i]];
+        }
+        _bLines = new int[_bIndex.length];
+        for (int j = 0; j < _bIndex.length; j++) {
+            _bLines[j] = bLines[_bIndex[j]];
+        }
+        _counts = new int[2 * interned.size()];
+        _positions = new int[2 * interned.size()];
+        diff(0, _aLines.length, 0, _bLines.length);
+    }
+
+    /** Get start offset of every line of given contents, followed by length of contents */
+    private static int[] lineStarts(byte[] contents) {
+        int count = 0;
+        for (byte b : contents) {
+            count += b == '\n' ? 1 : 0;
+        }
+        boolean isTerminated = contents.length == 0 || contents[contents.length - 1] == '\n';
+        int[] starts = new int[count + (isTerminated ? 0 : 1) + 1];
+        int line = 1;
+        for (int i = 0; i < contents.length - 1; i++) {
+            if (contents[i] == '\n') {
+                starts[line++] = i + 1;
+            }
+        }
+        starts[starts.length - 1] = contents.length;
+        return starts;
+    }
+
+    /** Get interned number of every line of given contents, numbering lines not seen before */
+    private static int[] intern(byte[] contents, int[] starts, HashMap<Line, Integer> interned) {
+        int[] lines = new int[starts.length - 1];
+        for (int i = 0; i < lines.length; i++) {
+            Line line = new Line(contents, starts[i], starts[i + 1]);
+            Integer number = interned.putIfAbsent(line, interned.size());
+            lines[i] = number != null ? number : interned.size() - 1;
+        }
+        return lines;
+    }
+
+    /** Get lines of version occurring in other version, marking the other lines as changed */
+    private static int[] comparedLines(int[] lines, boolean[] isInOther, boolean[] isChanged) {
+        int count = 0;
+        for (int i = 0; i < lines.length; i++) {
+            isChanged[i] = !isInOther[lines[i]];
+            count += isChanged[i] ? 0 : 1;
+        }
+        int[] index = new int[count];
+        for (int i = 0, c = 0; i < lines.length; i++) {
+            if (!isChanged[i]) {
+                index[c++] = i;
+            }
+        }
+        return index;
+    }
+
+    /** Mark compared lines [aLo, aHi) of old version as deleted and [bLo, bHi) of new version as inserted */
+    private void mark(int aLo, int aHi, int bLo, int bHi) {
+        for (int i = aLo; i < aHi; i++) {
+            _deleted[_aIndex[i]] = true;
+        }
+        for (int j = bLo; j < bHi; j++) {
+            _inserted[_bIndex[j]] = true;
+        }
+    }
+
+    /** Diff compared lines [aLo, aHi) of old version with lines [bLo, bHi) of new version */
+    private void diff(int aLo, int aHi, int bLo, int bHi) {
+        // Note: the part after a middle snake is diffed by this loop instead of by recursion, so a region split at
+        // the cost limit many times does not deepen the stack. The part after the point where search stopped is
+        // diffed with Myers' algorithm only, so its lines are not counted again for the patience step.
+        boolean isSplit = false;
+        while (true) {
+            while (aLo < aHi && bLo < bHi && _aLines[aLo] == _bLines[bLo]) {
+                aLo += 1;
+                bLo += 1;
+            }
+            while (aLo < aHi && bLo < bHi && _aLines[aHi - 1] == _bLines[bHi - 1]) {
+                aHi -= 1;
+                bHi -= 1;
+            }
+            if (aLo == aHi || bLo == bHi) {
+                mark(aLo, aHi, bLo, bHi);
+                return;
+            } else if (!isSplit && aHi - aLo + bHi - bLo >= MIN_PATIENCE && patience(aLo, aHi, bLo, bHi)) {
+                return;
+            }
+            int[] snake = middleSnake(aLo, aHi, bLo, bHi);
+            diff(aLo, snake[0], bLo, snake[1]);
+            aLo = snake[2];
+            bLo = snake[3];
+            isSplit = snake[4] != 0;
+        }
+    }
+
+    /**
+     * Split region at lines occurring exactly once in both versions, keeping the longest sequence of such lines
+     * that is in the same order in both versions, and diff gaps between them. Region without common lines is all
+     * deleted and inserted. Returns false if region has common lines but none of them is unique.
+     */
+    private boolean patience(int aLo, int aHi, int bLo, int bHi) {
+        // Note: counts of old version are kept in even slots and counts of new version in odd slots
+        for (int i = aLo; i < aHi; i++) {
+            _counts[2 * _aLines[i]] += 1;
+            _positions[2 * _aLines[i]] = i;
+        }
+        for (int j = bLo; j < bHi; j++) {
+            _counts[2 * _bLines[j] + 1] += 1;
+        }
+        int[] pairsA = new int[bHi - bLo];      // Old position per unique line, in order of new version
+        int[] pairsB = new int[bHi - bLo];      // New position per unique line
+        int pairs = 0;
+        boolean isCommon = false;               // Whether any line occurs in both versions
+        for (int j = bLo; j < bHi; j++) {
+            int line = _bLines[j];
+            isCommon |= _counts[2 * line] > 0;
+            if (_counts[2 * line] == 1 && _counts[2 * line + 1] == 1) {
+                pairsA[pairs] = _positions[2 * line];
+                pairsB[pairs] = j;
+                pairs += 1;
+            }
+        }
+        for (int i = aLo; i < aHi; i++) {
+            _counts[2 * _aLines[i]] = 0;
+        }
+        for (int j = bLo; j < bHi; j++) {
+            _counts[2 * _bLines[j] + 1] = 0;
+        }
+        // Note: region with no common lines is all deleted and inserted, without searching for an edit script
+        if (!isCommon) {
+            mark(aLo, aHi, bLo, bHi);
+            return true;
+        } else if (pairs == 0) {
+            return false;
+        }
+
+        // Find longest increasing sequence of old positions with patience sorting
+        int[] tails = new int[pairs];           // Pair ending increasing sequence of each length
+        int[] previous = new int[pairs];        // Pair before each pair in its sequence
+        int length = 0;
+        for (int p = 0; p < pairs; p++) {
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (pairsA[tails[mid]] < pairsA[p]) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            previous[p] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = p;
+            length = Math.max(length, lo + 1);
+        }
+
+        // Diff gaps between matched lines, from last to first
+        int aEnd = aHi;
+        int bEnd = bHi;
+        for (int p = tails[length - 1]; p >= 0; p = previous[p]) {
+            diff(pairsA[p] + 1, aEnd, pairsB[p] + 1, bEnd);
+            aEnd = pairsA[p];
+            bEnd = pairsB[p];
+        }
+        diff(aLo, aEnd, bLo, bEnd);
+        return true;
+    }
+
+    /**
+     * Find middle snake of region: matching lines crossed halfway along a shortest edit script, found by searching
+     * forward from start and backward from end at once. Returns {old start, new start, old end, new end, 0}.
+     * If search reaches cost limit, edits up to furthest point reached forward are marked instead, and the region
+     * up to it is returned as {old start, new start, old point, new point, 1} (whole region, marked as changed,
+     * if no point reached is inside region).
+     * Note: region must differ at its first and last lines, which diff ensures.
+     */
+    private int[] middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int delta = n - m;
+        boolean isOdd = (delta & 1) != 0;
+        int max = (n + m + 1) / 2 + 1;
+        // Note: search never goes past MAX_COST, so arrays only hold diagonals it can reach, whatever the region size
+        int offset = Math.min(max, MAX_COST + 2);
+        int[] forward = new int[2 * offset + 2];    // Furthest old position reached forward per diagonal (x - y)
+        int[] backward = new int[2 * offset + 2];   // Furthest distance from end reached backward per diagonal
+        boolean isTraced = max > MAX_COST + 1;      // Whether search may reach cost limit, so forward steps are kept
+        if (isTraced && _trace == null) {
+            _trace = new int[MAX_COST + 1][2 * offset + 2];
+        }
+        for (int d = 0; d < max; d++) {
+            if (d > MAX_COST) {
+                int[] end = furthest(forward, offset, d - 1, n, m);
+                if (end == null) {
+                    mark(aLo, aHi, bLo, bHi);
+                    return new int[]{aLo, bLo, aHi, bHi, 1};
+                }
+                backtrack(aLo, bLo, end[0], end[1], d - 1, offset);
+                return new int[]{aLo, bLo, aLo + end[0], bLo + end[1], 1};
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || k != d && forward[offset + k - 1] < forward[offset + k + 1]
+                        ? forward[offset + k + 1] : forward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x;
+                int startY = y;
+                while (x < n && y < m && _aLines[aLo + x] == _bLines[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                forward[offset + k] = x;
+                int reverse = delta - k;
+                if (isOdd && reverse >= -(d - 1) && reverse <= d - 1 && x + backward[offset + reverse] >= n) {
+                    return new int[]{aLo + startX, bLo + startY, aLo + x, bLo + y, 0};
+                }
+            }
+            if (isTraced) {
+                System.arraycopy(forward, offset - d, _trace[d], offset - d, 2 * d + 1);
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || k != d && backward[offset + k - 1] < backward[offset + k + 1]
+                        ? backward[offset + k + 1] : backward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x;
+                int startY = y;
+                while (x < n && y < m && _aLines[aHi - 1 - x] == _bLines[bHi - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                backward[offset + k] = x;
+                int reverse = delta - k;
+                if (!isOdd && reverse >= -d && reverse <= d && x + forward[offset + reverse] >= n) {
+                    return new int[]{aHi - x, bHi - y, aHi - startX, bHi - startY, 0};
+                }
+            }
+        }
+        throw Utils.error("Line diff found no middle snake.");
+    }
+
+    /** Get furthest point {x, y} inside n x m region reached by forward search after step d, or null if none */
+    private static int[] furthest(int[] forward, int offset, int d, int n, int m) {
+        int[] end = null;
+        for (int k = -d; k <= d; k += 2) {
+            int x = forward[offset + k];
+            if (x <= n && x - k <= m && (end == null || x + x - k > end[0] + end[1])) {
+                end = new int[]{x, x - k};
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Mark edits of path found by forward search from start of region to point (x, y) after step d, following
+     * kept forward steps back to start, so region before the point is not diffed again.
+     */
+    private void backtrack(int aLo, int bLo, int x, int y, int d, int offset) {
+        for (int e = d; e > 0; e--) {
+            int[] previous = _trace[e - 1];
+            int k = x - y;
+            boolean isInsert = k == -e || k != e && previous[offset + k - 1] < previous[offset + k + 1];
+            x = previous[offset + (isInsert ? k + 1 : k - 1)];
+            y = x - (isInsert ? k + 1 : k - 1);
+            if (isInsert) {
+                _inserted[_bIndex[bLo + y]] = true;
+            } else {
+                _deleted[_aIndex[aLo + x]] = true;
+            }
+        }
+    }
+
+    /** Get changed regions {old start, old end, new start, new end} in order, each between unchanged lines */
+    List<int[]> edits() {
+        ArrayList<int[]> edits = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < _deleted.length || j < _inserted.length) {
+            if (i < _deleted.length && _deleted[i] || j < _inserted.length && _inserted[j]) {
+                int[] edit = new int[]{i, i, j, j};
+                while (i < _deleted.length && _deleted[i]) {
+                    i += 1;
+                }
+                while (j < _inserted.length && _inserted[j]) {
+                    j += 1;
+                }
+                edit[1] = i;
+                edit[3] = j;
+                edits.add(edit);
+            } else {
+                i += 1;
+                j += 1;
+            }
+        }
+        return edits;
+    }
+
+    /**
+     * Write changes as hunks of unified diff with given number of unchanged context lines around changes. Hunks
+     * whose context lines would overlap are joined. Writes nothing if versions have the same lines.
+     */
+    void writeHunks(OutputStream out, int context) throws IOException {
+        List<int[]> edits = edits();
+        int first = 0;
+        while (first < edits.size()) {
+            // Note: joins following edits separated by at most twice the context
+            int last = first;
+            while (last + 1 < edits.size() && edits.get(last + 1)[0] - edits.get(last)[1] <= 2 * context) {
+                last += 1;
+            }
+            int aStart = Math.max(0, edits.get(first)[0] - context);
+            int bStart = edits.get(first)[2] - (edits.get(first)[0] - aStart);
+            int aEnd = Math.min(_deleted.length, edits.get(last)[1] + context);
+            int bEnd = edits.get(last)[3] + (aEnd - edits.get(last)[1]);
+            write(out, "@@ -" + range(aStart, aEnd - aStart) + " +" + range(bStart, bEnd - bStart) + " @@\n");
+
+            int i = aStart;
+            for (int e = first; e <= last; e++) {
+                int[] edit = edits.get(e);
+                for (; i < edit[0]; i++) {
+                    writeLine(out, ' ', _a, _aStarts, i);
+                }
+                for (; i < edit[1]; i++) {
+                    writeLine(out, '-', _a, _aStarts, i);
+                }
+                for (int j = edit[2]; j < edit[3]; j++) {
+                    writeLine(out, '+', _b, _bStarts, j);
+                }
+            }
+            for (; i < aEnd; i++) {
+                writeLine(out, ' ', _a, _aStarts, i);
+            }
+            first = last + 1;
+        }
+    }
+
+    /** Get line range of hunk header. Note: empty range is given by line before it, as in unified diff. */
+    private static String range(int start, int count) {
+        if (count == 0) {
+            return start + ",0";
+        }
+        return count == 1 ? String.valueOf(start + 1) : (start + 1) + "," + count;
+    }
+
+    /** Write line of given version with given prefix, marking a last line without new line */
+    private static void writeLine(OutputStream out, char prefix, byte[] contents, int[] starts, int line)
+            throws IOException {
+        out.write(prefix);
+        out.write(contents, starts[line], starts[line + 1] - starts[line]);
+        if (contents[starts[line + 1] - 1] != '\n') {
+            write(out, "\n\\ No newline at end of file\n");
+        }
+    }
+
+    /** Write text to output */
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /* Line of contents, compared by its bytes */
+    private static class Line {
+        byte[] _contents;       // Contents containing line
+        int _start;             // Start offset of line
+        int _end;               // End offset of line, after its new line
+        int _hash;              // Hash of line bytes
+
+        /** Constructor */
+        Line(byte[] contents, int start, int end) {
+            _contents = contents;
+            _start = start;
+            _end = end;
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + contents[i];
+            }
+            _hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Line)) {
+                return false;
+            }
+            Line other = (Line) obj;
+            return _hash == other._hash
+                    && Arrays.equals(_contents, _start, _end, other._contents, other._start, other._end);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/* Benchmark of line diff on large generated files. Generates a config file of key-value lines, many of them repeated,
+ * then times diffing it into a unified diff after warm-up runs, with a copy having scattered line edits, insertions,
+ * deletions and moved blocks, and with another generated file sharing no lines with it.
+ * Usage: java gitlet.LineDiffBenchmark [lines] [edits] [runs]
+ */
+public class LineDiffBenchmark {
+    static final int SEED = 61;                 // Seed of generated contents, so every run diffs the same files
+
+    /** Run benchmark */
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int edits = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        Random random = new Random(SEED);
+        String[] old = generate(lines, random);
+        time("Edited copy", join(old), join(edit(old, edits, random)), runs);
+
+        // Note: every line of other file is marked, so the two files share no lines (worst case of Myers' search)
+        String[] other = generate(lines, random);
+        for (int i = 0; i < other.length; i++) {
+            other[i] += " # other";
+        }
+        time("No common lines", join(old), join(other), runs);
+    }
+
+    /** Time diffing given contents after warm-up runs, and print results */
+    private static void time(String name, byte[] a, byte[] b, int runs) throws IOException {
+        System.out.println(name + ": " + a.length + " bytes to " + b.length + " bytes");
+        int size = 0;
+        for (int i = 0; i < runs; i++) {
+            size = run(a, b);
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            run(a, b);
+            long time = System.nanoTime() - start;
+            best = Math.min(best, time);
+            total += time;
+        }
+        System.out.println("Unified diff: " + size + " bytes");
+        System.out.printf("Best %.1f ms, mean %.1f ms over %d runs%n", best / 1e6, total / 1e6 / runs, runs);
+    }
+
+    /** Diff given contents into unified diff. Returns size of diff. */
+    private static int run(byte[] a, byte[] b) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new LineDiff(a, b).writeHunks(out, LineDiff.DEFAULT_CONTEXT);
+        return out.size();
+    }
+
+    /** Generate lines of config file with sections, where common lines (ex: closing braces) repeat often */
+    private static String[] generate(int lines, Random random) {
+        String[] result = new String[lines];
+        for (int i = 0; i < lines; i++) {
+            switch (random.nextInt(8)) {
+                case 0:
+                    result[i] = "[section-" + i + "]";
+                    break;
+                case 1:
+                    result[i] = "";
+                    break;
+                case 2:
+                    result[i] = "    enabled = " + random.nextBoolean();
+                    break;
+                default:
+                    result[i] = "    key" + random.nextInt(1000) + " = value" + random.nextInt(100000);
+            }
+        }
+        return result;
+    }
+
+    /** Copy lines with given number of random edits: changed, inserted, deleted lines and moved blocks */
+    private static String[] edit(String[] lines, int edits, Random random) {
+        String[] result = lines.clone();
+        for (int i = 0; i < edits; i++) {
+            int at = random.nextInt(result.length - 100);
+            switch (random.nextInt(4)) {
+                case 0:
+                    result[at] = "    changed" + i + " = " + random.nextInt();
+                    break;
+                case 1:
+                    result = splice(result, at, 0, new String[]{"    added" + i + " = true", "    more" + i + " = 1"});
+                    break;
+                case 2:
+                    result = splice(result, at, 1 + random.nextInt(5), new String[0]);
+                    break;
+                default:
+                    int length = 1 + random.nextInt(20);
+                    String[] block = new String[length];
+                    System.arraycopy(result, at, block, 0, length);
+                    result = splice(result, at, length, new String[0]);
+                    result = splice(result, random.nextInt(result.length - 100), 0, block);
+            }
+        }
+        return result;
+    }
+
+    /** Replace given number of lines from given index with given lines */
+    private static String[] splice(String[] lines, int at, int removed, String[] added) {
+        String[] result = new String[lines.length - removed + added.length];
+        System.arraycopy(lines, 0, result, 0, at);
+        System.arraycopy(added, 0, result, at, added.length);
+        System.arraycopy(lines, at + removed, result, at + added.length, lines.length - at - removed);
+        return result;
+    }
+
+    /** Join lines into file contents */
+    private static byte[] join(String[] lines) {
+        return (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
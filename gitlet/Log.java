@@ -1,6 +1,7 @@
 package gitlet;
 
-import java.io.File;
+import java.util.List;
+import java.util.Objects;
 
 /* Class for log and global-log command */
 public class Log {
@@ -9,18 +10,19 @@ public class Log {
      * Log command. Shows commit history starting with HEAD commit.
      */
     public static void printLog() {
-        Commit headCommit = Commit.getCurrent();
-        while (headCommit != null) {
+        // Note: history is walked without recursion, following first parent of merge commits
+        RevWalk walk = new RevWalk(RevWalk.Order.FIRST_PARENT).start(Commit.getCurrentID());
+        while (walk.hasNext()) {
+            Commit headCommit = walk.next();
             System.out.println("===");
             System.out.println("commit " + headCommit._sha1);
             // Note: parent1 = branch did merge, parent2 = merged-in branch
-            if (headCommit._mergedId != null) {
-                System.out.println("Merge: " + headCommit._mergedId);
+            if (headCommit.isMerge()) {
+                System.out.println(mergeLine(headCommit));
             }
             System.out.println(headCommit._time);
             System.out.print(headCommit._logMessage);
-            headCommit = findPrevCommit(headCommit);
-            if (headCommit != null) {
+            if (walk.hasNext()) {
                 System.out.println();
                 System.out.println();
             }
@@ -28,36 +30,70 @@ public class Log {
     }
 
     /**
-     * Helper method to find previous commit
+     * Log command for a single path. Shows commits in history of HEAD commit that changed given file or directory
+     * since their first parent. Note: commits whose changed-path filter rules the path out are skipped without
+     * reading their trees, so only trees of commits that may have changed the path are compared.
      */
-    private static Commit findPrevCommit(Commit headCommit)  {
-        if (headCommit._parentSha1 == null) {
-            return null;
+    public static void printPathLog(String path) {
+        while (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        RevWalk walk = new RevWalk(RevWalk.Order.FIRST_PARENT).start(Commit.getCurrentID());
+        CommitGraph graph = walk._graph;
+        ChangedPaths filters = ChangedPaths.get(graph);
+        boolean isFirst = true;
+        while (walk.hasNext()) {
+            int row = graph.row(walk.nextID());
+            if (!filters.mightChange(row, path)) {
+                continue;
+            }
+            int parent = graph._firstParents[row];
+            String parentTree = parent != CommitGraph.NO_PARENT ? graph._trees.get(parent) : null;
+            if (Objects.equals(Tree.getEntry(graph._trees.get(row), path), Tree.getEntry(parentTree, path))) {
+                continue;
+            }
+            Commit commit = Commit.getByID(graph._ids.get(row));
+            if (!isFirst) {
+                System.out.println();
+                System.out.println();
+            }
+            isFirst = false;
+            System.out.println("===");
+            System.out.println("commit " + commit._sha1);
+            if (commit.isMerge()) {
+                System.out.println(mergeLine(commit));
+            }
+            System.out.println(commit._time);
+            System.out.print(commit._logMessage);
         }
-        return Commit.getByID(headCommit._parentSha1);
+    }
+
+    /**
+     * Helper method to show parents of merge commit as abbreviated identifiers
+     */
+    private static String mergeLine(Commit commit) {
+        return "Merge: " + commit._parents.get(0).substring(0, 7) + " " + commit._parents.get(1).substring(0, 7);
     }
 
     /**
      * Global-log command. Shows all commits in random order.
      */
     public static void printGlobal() {
-        // Note: commitList will never be null since initial commit always created
-        File[] commitList = Main.COMMITS.listFiles();
-        for (int i = 0; i < commitList.length; i++) {
-            for (File file : commitList[i].listFiles()) {
-                Commit commit = Utils.readObject(file,Commit.class);
-                System.out.println("===");
-                System.out.println("commit " + commit._sha1);
-                // Note: parent1 = branch did merge, parent2 = merged-in branch
-                if (commit._mergedId != null) {
-                    System.out.println("Merge: " + commit._mergedId);
-                }
-                System.out.println(commit._time);
-                System.out.print(commit._logMessage);
-                if (i != commitList.length - 1) {
-                    System.out.println();
-                    System.out.println();
-                }
+        // Note: commitList will never be empty since initial commit always created
+        List<String> commitList = ObjectStore.list(Main.COMMITS);
+        for (int i = 0; i < commitList.size(); i++) {
+            Commit commit = Commit.getByID(commitList.get(i));
+            System.out.println("===");
+            System.out.println("commit " + commit._sha1);
+            // Note: parent1 = branch did merge, parent2 = merged-in branch
+            if (commit.isMerge()) {
+                System.out.println(mergeLine(commit));
+            }
+            System.out.println(commit._time);
+            System.out.print(commit._logMessage);
+            if (i != commitList.size() - 1) {
+                System.out.println();
+                System.out.println();
             }
         }
     }
@@ -2,6 +2,7 @@ package gitlet;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 /* Driver class for Gitlet, the tiny stupid version-control system.
    @Eric Pineda
@@ -14,16 +15,20 @@ public class Main {
     static final File COMMITS = Utils.join(OBJECTS,"commits");       // Commit directory
     static final File BLOB = Utils.join(OBJECTS,"blobs");            // Blob directory
     static final File TREE = Utils.join(OBJECTS,"trees");            // Tree directory
+    static final File PACK = Utils.join(OBJECTS,"pack");             // Packfile directory
     static final File BRANCH = Utils.join(GITLET,"refs","heads");    // Branch name directory
     static final File HEAD = Utils.join(GITLET,"HEAD.txt");          // File shows current branch
     static final File CONFIG = Utils.join(GITLET,"config.txt");      // Configuration file
+    static final File COMMIT_GRAPH = Utils.join(GITLET,"commit-graph"); // Commit ancestry file
+    static final File CHANGED_PATHS = Utils.join(GITLET,"commit-graph-paths"); // Changed-path filters of commits
+    static final File MESSAGES = Utils.join(GITLET,"messages");      // Commit message index folder
 
     /* Usage: java gitlet.Main ARGS, where ARGS contains <COMMAND> <OPERAND> .... */
     public static void main(String... args) throws IOException {
         if (args.length == 0) {
             System.out.print("Please enter a command.");
             return;
-        } else if (!args[0].equals("init") && !GITLET.exists()) {
+        } else if (!args[0].equals("init") && !args[0].equals("batch") && !GITLET.exists()) {
             System.out.print("Not in an initialized Gitlet directory");
             return;
         }
@@ -68,6 +73,30 @@ public class Main {
             case "merge":
                 merge(args);
                 break;
+            case "repack":
+                repack(args);
+                break;
+            case "migrate":
+                migrate(args);
+                break;
+            case "reindex":
+                reindex(args);
+                break;
+            case "daemon":
+                daemon(args);
+                break;
+            case "batch":
+                batch(args);
+                break;
+            case "fast-import":
+                fastImport(args);
+                break;
+            case "fast-export":
+                fastExport(args);
+                break;
+            case "diff":
+                diff(args);
+                break;
             default:
                 System.out.print("No command with that name exists.");
                 break;
@@ -89,11 +118,11 @@ public class Main {
      * Add command
      */
     public static void add(String[] args) throws IOException {
-        if (args.length != 2) {
+        if (args.length < 2) {
             errorMessage();
             return;
         }
-        Stage.add(args[1]);
+        Stage.add(Arrays.asList(args).subList(1, args.length));
     }
 
     /**
@@ -126,7 +155,10 @@ public class Main {
      * Log command
      */
     public static void log(String[] args) {
-        if (args.length != 1) {
+        if (args.length == 3 && args[1].equals("--")) {
+            Log.printPathLog(args[2]);
+            return;
+        } else if (args.length != 1) {
             errorMessage();
             return;
         }
@@ -228,6 +260,88 @@ public class Main {
         }
     }
 
+    /**
+     * Repack command
+     */
+    public static void repack(String[] args) throws IOException {
+        if (args.length != 1) {
+            errorMessage();
+            return;
+        }
+        Pack.repack();
+    }
+
+    /**
+     * Migrate command
+     */
+    public static void migrate(String[] args) throws IOException {
+        if (args.length != 1) {
+            errorMessage();
+            return;
+        }
+        Migrate.apply();
+    }
+
+    /**
+     * Reindex command. Rebuilds commit message index used by find command.
+     */
+    public static void reindex(String[] args) {
+        if (args.length != 1) {
+            errorMessage();
+            return;
+        }
+        MessageIndex.rebuild();
+    }
+
+    /**
+     * Daemon command. Serves commands sent by gitlet.Client until stopped.
+     */
+    public static void daemon(String[] args) throws IOException {
+        if (args.length == 1) {
+            Daemon.serve();
+        } else if (args.length == 2 && args[1].equals("stop")) {
+            Daemon.stop();
+        } else {
+            errorMessage();
+        }
+    }
+
+    /**
+     * Batch command. Runs commands read from standard input, one per line.
+     */
+    public static void batch(String[] args) throws IOException {
+        if (args.length != 1) {
+            errorMessage();
+            return;
+        }
+        Batch.run();
+    }
+
+    /**
+     * Fast-import command. Imports history read from standard input.
+     */
+    public static void fastImport(String[] args) throws IOException {
+        if (args.length != 1) {
+            errorMessage();
+            return;
+        }
+        FastImport.apply();
+    }
+
+    /**
+     * Fast-export command. Writes history of given branches (or every branch) to standard output.
+     */
+    public static void fastExport(String[] args) throws IOException {
+        FastExport.apply(Arrays.asList(args).subList(1, args.length));
+    }
+
+    /**
+     * Diff command. Shows files changed between commits, stage and working directory.
+     */
+    public static void diff(String[] args) {
+        Diff.apply(Arrays.copyOfRange(args, 1, args.length));
+    }
+
     /**
      * Error message
      */
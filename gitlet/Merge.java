@@ -1,11 +1,19 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /* Class for merge command */
 public class Merge {
+    static final String CONFLICT_HEAD = "<<<<<<< HEAD\n";     // Marker before current lines of conflict
+    static final String CONFLICT_MIDDLE = "=======\n";        // Marker between current and target lines
+    static final String CONFLICT_END = ">>>>>>>\n";           // Marker after target lines of conflict
+
     String _currentBranch; // Current branch
     Boolean _conflict;     // Boolean for conflicts
 
@@ -20,16 +28,30 @@ public class Merge {
      */
     public void apply(String givenBranch) throws IOException {
 
-        // Check for stage errors
+        // Retrieve HEAD commits of both branches and their split point
+        // Note: found once, and used both to check for untracked files in the way and to merge
         Stage stage = Stage.read();
-        if (Utils.checkUntrackedCwd()) {
+        boolean isGivenBranch = Utils.join(Main.BRANCH, givenBranch).exists();
+        String currentBranchSHA1 = Branch.read(_currentBranch);
+        String givenBranchSHA1 = isGivenBranch ? Branch.read(givenBranch) : null;
+        Commit currentCommit = Commit.getByID(currentBranchSHA1);
+        Commit givenCommit = Commit.getByID(givenBranchSHA1);
+        Commit splitPoint = isGivenBranch ? Commit.getByID(splitPoint(currentCommit, givenCommit)) : null;
+
+        // Check for stage errors
+        boolean isUntrackedInWay = isUntrackedInWay(stage, isGivenBranch, splitPoint);
+        // Save stat data of files hashed while checking untracked files
+        if (stage._isStatsChanged) {
+            Stage.write(stage);
+        }
+        if (isUntrackedInWay) {
             System.out.print("There is an untracked file in the way; delete it, " +
                     "or add and commit it first.");
             return;
         } else if (!stage.isAdditionsEmpty() || !stage.isDeletionsEmpty()) {
             System.out.print("You have uncommitted changes.");
             return;
-        } else if (!Utils.join(Main.BRANCH, givenBranch).exists()) {
+        } else if (!isGivenBranch) {
             System.out.print("A branch with that name does not exist.");
             return;
         } else if (givenBranch.equals(_currentBranch)) {
@@ -37,34 +59,29 @@ public class Merge {
             return;
         }
 
-        // Retrieve both branch names and HEAD commits
-        String currentBranchSHA1 = Branch.read(_currentBranch);
-        String givenBranchSHA1 = Branch.read(givenBranch);
-        Commit currentCommit = Commit.getByID(currentBranchSHA1);
-        Commit givenCommit = Commit.getByID(givenBranchSHA1);
-
-        // Find split point SHA1
-        String splitPointSHA1 = splitPoint(currentCommit, givenCommit);
-
-        // Get split point commit
-        Commit splitPoint = Commit.getByID(splitPointSHA1);
-
-        // Check if given branch is ancestor (split-point is same commit as given branch)
-        if (givenBranchSHA1.equals(splitPointSHA1)) {
+        // Check if given branch is ancestor of current branch
+        // Note: ancestry is checked with commit-graph generation numbers instead of reading commit history
+        if (CommitGraph.isAncestor(givenBranchSHA1, currentBranchSHA1)) {
             System.out.print("Given branch is an ancestor of the current branch.");
             return;
-        // Check if current branch is split-point
-        } else if (currentBranchSHA1.equals(splitPointSHA1)) {
+        // Check if current branch is ancestor of given branch
+        } else if (CommitGraph.isAncestor(currentBranchSHA1, givenBranchSHA1)) {
             Checkout.reset(givenBranchSHA1);
             System.out.print("Current branch fast-forwarded.");
             return;
         }
 
         // Note: check modifications/removals between split-point,current branch, target branch history files
-        HashMap<String, String> splitPointCommitFiles = Tree.getBlobs(splitPoint._tree);
-        // Note: tree hash never null since initializing commits always creates tree
-        HashMap<String, String> givenCommitFiles = Tree.getBlobs(givenCommit._tree);
-        HashMap<String, String> currentCommitFiles = Tree.getBlobs(currentCommit._tree);
+        // Note: every merge rule applies to a file changed in given branch since split-point, so only files changed
+        // between split-point and given tree are compared, and unchanged subdirectories are never read
+        HashMap<String, String> splitPointCommitFiles = new HashMap<>();
+        HashMap<String, String> givenCommitFiles = new HashMap<>();
+        HashMap<String, String> currentCommitFiles = new HashMap<>();
+        Diff.trees(splitPoint._tree, givenCommit._tree, (name, splitPointID, givenID) -> {
+            putBlob(splitPointCommitFiles, name, splitPointID);
+            putBlob(givenCommitFiles, name, givenID);
+            putBlob(currentCommitFiles, name, Tree.getBlob(currentCommit._tree, name));
+        });
 
         // 1. Files modified in given branch since splitPoint, not modified in currB since splitPoint
         // -> changed to versions in given branch
@@ -73,7 +90,8 @@ public class Merge {
         checkAbsentCurrentBranch(givenCommitFiles, currentCommitFiles, splitPointCommitFiles);
         // Check merge conflicts
         Commit commit = new Commit("Merged " + givenBranch + " into " + _currentBranch + ".", currentCommit._sha1);
-        commit._mergedId = currentBranchSHA1.substring(0, 7) + " " + givenBranchSHA1.substring(0, 7);
+        commit._parents.add(givenBranchSHA1);
+        commit._sha1 = commit.createHash();
         commit.write();
 
         // Note: Will still create commit even if there is merge conflict (in documentation)
@@ -82,6 +100,35 @@ public class Merge {
         }
     }
 
+    /**
+     * Check for untracked file in the way of merge with given branch, which may not exist. Untracked files are found
+     * from HEAD tree and index, and hashed using stat data of given stage. Note: untracked file identical to version
+     * at SPLITPOINT is not in the way, since that version is already stored in history of both branches.
+     */
+    private boolean isUntrackedInWay(Stage stage, boolean isGivenBranch, Commit splitPoint) {
+        ArrayList<String> untrackedFiles = Utils.getUntrackedFiles();
+        if (untrackedFiles.isEmpty()) {
+            return false;
+        } else if (!isGivenBranch) {
+            return true;
+        }
+        HashMap<String, String> splitPointFiles = splitPoint != null ? Tree.getBlobs(splitPoint._tree) : new HashMap<>();
+        for (String fileName : untrackedFiles) {
+            String splitPointFile = splitPointFiles.get(fileName);
+            if (splitPointFile == null || !splitPointFile.equals(stage.hashFile(fileName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Add file with given blob to given files, unless file does not exist */
+    private static void putBlob(HashMap<String, String> files, String name, String sha1) {
+        if (sha1 != null) {
+            files.put(name, sha1);
+        }
+    }
+
     /** Check modified files in given branch and current branch since split-point commit */
     private void checkModified(HashMap<String, String> givenCommitFiles, HashMap<String, String> currentCommitFiles,
                                HashMap<String, String> splitPointCommitFiles) throws IOException {
@@ -95,8 +142,7 @@ public class Merge {
             if (!splitPointCommitFiles.containsKey(name)) {
                 // Conflict 3. Checks if file absent at splitPoint and has different contents in given & current branch
                 if (currentCommitFiles.containsKey(name) && !currentCommitFiles.get(name).equals(sha1)) {
-                    _conflict = true;
-                    createConflictFile(name, currentCommitFiles.get(name), sha1);
+                    _conflict |= createConflictFile(name, null, currentCommitFiles.get(name), sha1);
                     Stage.add(name);
                 }
                 // 2. Files not present at splitPoint and only present in given branch are checkouted and staged
@@ -134,21 +180,20 @@ public class Merge {
             if (currentCommitFiles.containsKey(name) && givenCommitFiles.containsKey(name)) {
                 if (!currentCommitFiles.get(name).equals(givenCommitFiles.get(name)) &&
                         !currentCommitFiles.get(name).equals(sha1) && !givenCommitFiles.get(name).equals(sha1)) {
-                    _conflict = true;
-                    createConflictFile(name, currentCommitFiles.get(name), givenCommitFiles.get(name));
+                    // Note: lines changed by only one branch are merged, and only overlapping changes conflict
+                    _conflict |= createConflictFile(name, sha1, currentCommitFiles.get(name),
+                            givenCommitFiles.get(name));
                     Stage.add(name);
                     continue;
                 }
             }
             // Conflict 2: Contents of one branch change, deleted in other branch and is different in splitPoint
             if (currentCommitFiles.containsKey(name) && !currentCommitFiles.get(name).equals(sha1) && !givenCommitFiles.containsKey(name)) {
-                _conflict = true;
-                createConflictFile(name, currentCommitFiles.get(name), null);
+                _conflict |= createConflictFile(name, sha1, currentCommitFiles.get(name), null);
                 Stage.add(name);
             }
             if (givenCommitFiles.containsKey(name) && !givenCommitFiles.get(name).equals(sha1) && !currentCommitFiles.containsKey(name)) {
-                _conflict = true;
-                createConflictFile(name, null, givenCommitFiles.get(name));
+                _conflict |= createConflictFile(name, sha1, null, givenCommitFiles.get(name));
                 Stage.add(name);
             }
             // 5. File present at splitPoint, unmodified in current branch, absent in given branch are removed and untracked
@@ -162,74 +207,120 @@ public class Merge {
         }
     }
 
-    /** Get split-point between two different commits */
+    /** Get split-point between two different commits. Split-point is the common ancestor with shortest distance
+     *  from current commit, found with commit-graph. */
     static String splitPoint(Commit currentCommit, Commit givenCommit) {
+        return CommitGraph.splitPoint(currentCommit._sha1, givenCommit._sha1);
+    }
 
-        // Get given commit history files
-        ArrayList<String> givenCommitHistory = Utils.getAllCommitHistory(givenCommit, new ArrayList<>());
-
-        // Get possible split points between current commit and given commit
-        HashMap<String, Integer> possible = splitPointHelper(currentCommit, givenCommitHistory, new HashMap<>(), 0);
-
-        // Get shortest distance split-point
-        return Collections.min(possible.entrySet(), Map.Entry.comparingByValue()).getKey();
+    /**
+     * Replace contents of a file with three-way merge of its current and target versions, from its version at
+     * split-point. Returns true if the file has conflicts. A null blob stands for a file that does not exist.
+     */
+    public static boolean createConflictFile(String fileName, String base, String current, String target)
+            throws IOException {
+        File file = Utils.join(Main.USERDIR, fileName);
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            byte[] currentContents = Blob.readContents(current);
+            byte[] targetContents = Blob.readContents(target);
+            // Note: file changed in one branch and removed in the other, or added in both branches, has no common
+            // version to merge lines from, so it always conflicts as a whole
+            if (base == null || current == null || target == null) {
+                writeConflict(out, currentContents, 0, currentContents.length, targetContents, 0,
+                        targetContents.length);
+                return true;
+            }
+            return mergeLines(out, Blob.readContents(base), currentContents, targetContents);
+        }
     }
 
-    /** Get all possible split-points between current branch commit and given branch commit history.
-     * Distance variable is the length from the first commit to be called on and any possible split-points.
-     * Note: This is dfs recursive function. */
-    private static HashMap<String, Integer> splitPointHelper(Commit currentCommit, ArrayList<String> givenCommitHistory,
-                                           HashMap<String, Integer> possibleSplitPoints, int distance) {
-        // Traversed past initial commit, return possible split points saved during recursion.
-        if (currentCommit == null) {
-            return possibleSplitPoints;
+    /**
+     * Write three-way merge of current and target contents from base contents. Lines changed since base by only
+     * one side are taken from that side, and lines changed the same way by both sides are kept once. Returns true
+     * if both sides changed the same lines differently: each such region is written between conflict markers,
+     * with current lines before target lines. Note: changes of both sides at adjacent lines also conflict, as in Git.
+     */
+    static boolean mergeLines(OutputStream out, byte[] base, byte[] current, byte[] target) throws IOException {
+        // Note: binary contents are not merged by lines, so both whole versions are kept in one conflict
+        if (Diff.isBinary(base) || Diff.isBinary(current) || Diff.isBinary(target)) {
+            writeConflict(out, current, 0, current.length, target, 0, target.length);
+            return true;
         }
-        // Check if current commit is split-point in given commit history
-        if (givenCommitHistory.contains(currentCommit._sha1)) {
-            // if list of possible split points already contains current commit
-            if (possibleSplitPoints.containsKey(currentCommit._sha1)) {
-                // If distance is shorter, replace previous distance with new distannce
-                if (distance < possibleSplitPoints.get(currentCommit._sha1)) {
-                    possibleSplitPoints.put(currentCommit._sha1, distance);
+        LineDiff currentDiff = new LineDiff(base, current);
+        LineDiff targetDiff = new LineDiff(base, target);
+        List<int[]> currentEdits = currentDiff.edits();
+        List<int[]> targetEdits = targetDiff.edits();
+        int[] baseStarts = currentDiff._aStarts;
+        int[] currentStarts = currentDiff._bStarts;
+        int[] targetStarts = targetDiff._bStarts;
+        boolean isConflict = false;
+        int baseLine = 0;           // First base line not written yet
+        int currentOffset = 0;      // Current line minus base line after edits merged so far
+        int targetOffset = 0;       // Target line minus base line after edits merged so far
+        int i = 0;
+        int j = 0;
+        while (i < currentEdits.size() || j < targetEdits.size()) {
+            // Group edits of both sides whose base lines overlap or touch, starting from first edit
+            int lo = Math.min(i < currentEdits.size() ? currentEdits.get(i)[0] : Integer.MAX_VALUE,
+                    j < targetEdits.size() ? targetEdits.get(j)[0] : Integer.MAX_VALUE);
+            int hi = lo;
+            int currentStart = lo + currentOffset;
+            int targetStart = lo + targetOffset;
+            boolean isCurrentChanged = false;
+            boolean isTargetChanged = false;
+            while (true) {
+                if (i < currentEdits.size() && currentEdits.get(i)[0] <= hi) {
+                    int[] edit = currentEdits.get(i++);
+                    hi = Math.max(hi, edit[1]);
+                    currentOffset += (edit[3] - edit[2]) - (edit[1] - edit[0]);
+                    isCurrentChanged = true;
+                } else if (j < targetEdits.size() && targetEdits.get(j)[0] <= hi) {
+                    int[] edit = targetEdits.get(j++);
+                    hi = Math.max(hi, edit[1]);
+                    targetOffset += (edit[3] - edit[2]) - (edit[1] - edit[0]);
+                    isTargetChanged = true;
+                } else {
+                    break;
                 }
+            }
+            int currentEnd = hi + currentOffset;
+            int targetEnd = hi + targetOffset;
+
+            writeLines(out, base, baseStarts, baseLine, lo);
+            int currentFrom = currentStarts[currentStart];
+            int currentTo = currentStarts[currentEnd];
+            int targetFrom = targetStarts[targetStart];
+            int targetTo = targetStarts[targetEnd];
+            if (!isTargetChanged || isCurrentChanged
+                    && Arrays.equals(current, currentFrom, currentTo, target, targetFrom, targetTo)) {
+                out.write(current, currentFrom, currentTo - currentFrom);
+            } else if (!isCurrentChanged) {
+                out.write(target, targetFrom, targetTo - targetFrom);
             } else {
-                // Else, add current commit and its distance
-                possibleSplitPoints.put(currentCommit._sha1, distance);
+                writeConflict(out, current, currentFrom, currentTo, target, targetFrom, targetTo);
+                isConflict = true;
             }
+            baseLine = hi;
         }
-        // Check if commit is merge commit
-        if (currentCommit._mergedId != null) {
-            String merge = currentCommit._mergedId;
-            File c1 = Utils.createFilePath(merge.substring(0, 7), Main.COMMITS);
-            File c2 = Utils.createFilePath(merge.substring(8, 15), Main.COMMITS);
-            // Recurse on each parent of merge commit
-            splitPointHelper(Utils.readObject(c1, Commit.class), givenCommitHistory, possibleSplitPoints, distance + 1);
-            splitPointHelper(Utils.readObject(c2, Commit.class), givenCommitHistory, possibleSplitPoints, distance + 1);
-        } else {
-            // Else, continue up commit tree via parent commit
-            splitPointHelper(Commit.getByID(currentCommit._parentSha1), givenCommitHistory, possibleSplitPoints, distance + 1);
-        }
-        return possibleSplitPoints;
+        writeLines(out, base, baseStarts, baseLine, baseStarts.length - 1);
+        return isConflict;
     }
 
+    /** Write lines [from, to) of given contents */
+    private static void writeLines(OutputStream out, byte[] contents, int[] starts, int from, int to)
+            throws IOException {
+        out.write(contents, starts[from], starts[to] - starts[from]);
+    }
 
-    /** Replace contents of a file with conflict message */
-    public static void createConflictFile(String fileName, String current, String target) {
-        String header = "<<<<<<< HEAD\n";
-        String middle = "=======\n";
-        String end = ">>>>>>>\n";
-        String curr = "";
-        String tar = "";
-        if (current != null) {
-            Blob currBlob = Utils.readObject(Utils.createFilePath(current, Main.BLOB), Blob.class);
-            curr = currBlob._fileContent;
-        }
-        if (target != null) {
-            Blob tarBlob = Utils.readObject(Utils.createFilePath(target, Main.BLOB), Blob.class);
-            tar = tarBlob._fileContent;
-        }
-        byte[] conflict = (header + curr + middle + tar + end).getBytes();
-        Utils.writeContents(Utils.join(Main.USERDIR, fileName), conflict);
+    /** Write given byte ranges of current and target contents between conflict markers */
+    private static void writeConflict(OutputStream out, byte[] current, int currentFrom, int currentTo,
+                                      byte[] target, int targetFrom, int targetTo) throws IOException {
+        out.write(CONFLICT_HEAD.getBytes(StandardCharsets.UTF_8));
+        out.write(current, currentFrom, currentTo - currentFrom);
+        out.write(CONFLICT_MIDDLE.getBytes(StandardCharsets.UTF_8));
+        out.write(target, targetFrom, targetTo - targetFrom);
+        out.write(CONFLICT_END.getBytes(StandardCharsets.UTF_8));
     }
 }
 
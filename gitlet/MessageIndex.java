@@ -0,0 +1,127 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/* Class for commit message index used by find command. Commits are recorded in 256 bucket files named by the first
+ * byte of the SHA1 hash of their message, and each record is the 20-byte message hash followed by the 20-byte commit
+ * identifier. Records are appended when a commit is written, so looking up a message reads a single bucket.
+ * Note: index folder only exists once every commit has been recorded, so a missing index is rebuilt before use. */
+public class MessageIndex {
+    static final int RECORD_SIZE = 2 * Pack.ID_LENGTH;     // Length of single record
+
+    /** Get sorted identifiers of commits with given message */
+    static TreeSet<String> find(String message) {
+        if (!Main.MESSAGES.isDirectory()) {
+            rebuild();
+        }
+        byte[] hash = Utils.toBytes(Utils.sha1(message));
+        TreeSet<String> commits = new TreeSet<>();
+        File bucket = bucket(hash);
+        if (!bucket.isFile()) {
+            return commits;
+        }
+        // Note: partially written last record is ignored
+        ByteBuffer records = ByteBuffer.wrap(Utils.readContents(bucket));
+        byte[] recordHash = new byte[Pack.ID_LENGTH];
+        byte[] commit = new byte[Pack.ID_LENGTH];
+        while (records.remaining() >= RECORD_SIZE) {
+            records.get(recordHash);
+            records.get(commit);
+            if (Arrays.equals(hash, recordHash)) {
+                commits.add(Utils.toHex(commit));
+            }
+        }
+        return commits;
+    }
+
+    /** Record message of newly written commit. Skipped if index has not been built yet. */
+    static void add(Commit commit) {
+        if (Main.MESSAGES.isDirectory()) {
+            add(Main.MESSAGES, commit._sha1, commit._logMessage);
+        }
+    }
+
+    /** Record messages of many newly written commits, appending to each bucket once.
+     *  Skipped if index has not been built yet. */
+    static void add(List<Commit> commits) {
+        if (!Main.MESSAGES.isDirectory()) {
+            return;
+        }
+        TreeMap<String, ByteArrayOutputStream> buckets = new TreeMap<>();
+        for (Commit commit : commits) {
+            byte[] record = record(commit._sha1, commit._logMessage);
+            buckets.computeIfAbsent(bucketName(record), name -> new ByteArrayOutputStream()).writeBytes(record);
+        }
+        for (Map.Entry<String, ByteArrayOutputStream> bucket : buckets.entrySet()) {
+            append(Utils.join(Main.MESSAGES, bucket.getKey()), bucket.getValue().toByteArray());
+        }
+    }
+
+    /** Rebuild index from every stored commit. Note: index is written to temporary folder first, so an
+     *  interrupted rebuild never leaves a partial index in place. */
+    static void rebuild() {
+        File temp = Utils.join(Main.GITLET, "messages.tmp");
+        clear(temp);
+        temp.mkdir();
+        for (String id : ObjectStore.list(Main.COMMITS)) {
+            add(temp, id, Commit.getByID(id)._logMessage);
+        }
+        clear(Main.MESSAGES);
+        if (!temp.renameTo(Main.MESSAGES)) {
+            throw Utils.error("Could not write message index.");
+        }
+    }
+
+    /** Append record for commit to bucket in given index folder */
+    private static void add(File folder, String id, String message) {
+        byte[] record = record(id, message);
+        append(Utils.join(folder, bucketName(record)), record);
+    }
+
+    /** Create record for commit with given identifier and message */
+    private static byte[] record(String id, String message) {
+        byte[] record = new byte[RECORD_SIZE];
+        System.arraycopy(Utils.toBytes(Utils.sha1(message)), 0, record, 0, Pack.ID_LENGTH);
+        System.arraycopy(Utils.toBytes(id), 0, record, Pack.ID_LENGTH, Pack.ID_LENGTH);
+        return record;
+    }
+
+    /** Append records to bucket file */
+    private static void append(File bucket, byte[] records) {
+        try (FileOutputStream out = new FileOutputStream(bucket, true)) {
+            out.write(records);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Get bucket file of message hash */
+    private static File bucket(byte[] hash) {
+        return Utils.join(Main.MESSAGES, bucketName(hash));
+    }
+
+    /** Get name of bucket file from first byte of message hash */
+    private static String bucketName(byte[] hash) {
+        return Utils.toHex(new byte[]{hash[0]});
+    }
+
+    /** Delete index folder and its buckets */
+    private static void clear(File folder) {
+        File[] buckets = folder.listFiles();
+        if (buckets != null) {
+            for (File bucket : buckets) {
+                bucket.delete();
+            }
+        }
+        folder.delete();
+    }
+}
@@ -0,0 +1,146 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+
+/* Class for migrate command. Upgrades objects written by older versions of gitlet in place. */
+public class Migrate {
+
+    /**
+     * Migrate command. Safe to run more than once.
+     */
+    static void apply() throws IOException {
+        migrateEncoding();
+        migrateBlobs();
+        migrateTrees();
+    }
+
+    /**
+     * Re-encode commits, trees and stage written with Java serialization in binary format. Commits written with
+     * abbreviated merge identifiers are re-encoded with full parent identifiers.
+     */
+    private static void migrateEncoding() {
+        for (String id : ObjectStore.list(Main.COMMITS)) {
+            byte[] contents = ObjectStore.read(id, Main.COMMITS);
+            if (Codec.isSerialized(contents) || contents[1] < 2) {
+                ObjectStore.replace(id, Commit.decode(id, contents).encode(), Main.COMMITS);
+            }
+        }
+        for (String id : ObjectStore.list(Main.TREE)) {
+            byte[] contents = ObjectStore.read(id, Main.TREE);
+            if (Codec.isSerialized(contents)) {
+                ObjectStore.replace(id, Tree.decode(id, contents).encode(), Main.TREE);
+            }
+        }
+        Stage.write(Stage.read());
+    }
+
+    /**
+     * Re-address blobs by contents only. Tree entries and stage are rewritten to use new blob identifiers.
+     * Note: trees keep their identifiers, so commits and branches are unchanged.
+     */
+    private static void migrateBlobs() throws IOException {
+        HashMap<String, String> renamed = new HashMap<>();  // {Old blob identifier: New blob identifier}
+
+        // Rewrite tree entries
+        for (String treeID : ObjectStore.list(Main.TREE)) {
+            Tree tree = ObjectStore.readObject(treeID, Main.TREE, Tree::decode);
+            if (updateEntries(tree._blobList, renamed)) {
+                ObjectStore.replace(treeID, tree.encode(), Main.TREE);
+            }
+        }
+
+        // Rewrite stage entries
+        Stage stage = Stage.read();
+        boolean isAdditionsUpdated = updateEntries(stage._additions, renamed);
+        boolean isDeletionsUpdated = updateEntries(stage._deletions, renamed);
+        if (isAdditionsUpdated || isDeletionsUpdated) {
+            Stage.write(stage);
+        }
+
+        // Remove loose blobs that were stored under old identifiers
+        for (String oldID : renamed.keySet()) {
+            if (!renamed.get(oldID).equals(oldID) && !renamed.containsValue(oldID)) {
+                ObjectStore.looseFile(oldID, Main.BLOB).delete();
+            }
+        }
+    }
+
+    /**
+     * Re-address trees by their sorted entries only, so trees with same files on different branches are stored once.
+     * Commits are rewritten to refer to new tree identifiers, and commit-graph, which holds tree identifiers of
+     * every commit, is rebuilt on next use.
+     */
+    private static void migrateTrees() {
+        HashMap<String, String> renamed = new HashMap<>();  // {Old tree identifier: New tree identifier}
+        for (String id : ObjectStore.list(Main.TREE)) {
+            Tree tree = ObjectStore.readObject(id, Main.TREE, Tree::decode);
+            String newID = tree.createHash();
+            if (!newID.equals(id)) {
+                // Note: object is not written again if identical tree was already stored under new identifier
+                ObjectStore.write(newID, tree.encode(), Main.TREE);
+                renamed.put(id, newID);
+            }
+        }
+        if (renamed.isEmpty()) {
+            return;
+        }
+
+        // Rewrite commits referring to old tree identifiers
+        for (String id : ObjectStore.list(Main.COMMITS)) {
+            Commit commit = Commit.getByID(id);
+            if (commit._tree != null && renamed.containsKey(commit._tree)) {
+                commit._tree = renamed.get(commit._tree);
+                ObjectStore.replace(id, commit.encode(), Main.COMMITS);
+            }
+        }
+
+        // Remove loose trees that were stored under old identifiers
+        for (String oldID : renamed.keySet()) {
+            ObjectCache.remove(oldID, Main.TREE);
+            ObjectStore.looseFile(oldID, Main.TREE).delete();
+        }
+        Main.COMMIT_GRAPH.delete();
+        Main.CHANGED_PATHS.delete();
+        CommitGraph.reload();
+        ChangedPaths.reload();
+    }
+
+    /** Replace blob identifiers in given entries with content-only identifiers. Returns true if any entry changed. */
+    private static boolean updateEntries(HashMap<String, String> entries, HashMap<String, String> renamed)
+            throws IOException {
+        boolean isUpdated = false;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            String id = entry.getValue();
+            if (!renamed.containsKey(id)) {
+                renamed.put(id, rehash(id));
+            }
+            if (!renamed.get(id).equals(id)) {
+                entry.setValue(renamed.get(id));
+                isUpdated = true;
+            }
+        }
+        return isUpdated;
+    }
+
+    /** Store contents of blob under content-only identifier. Returns new identifier. */
+    private static String rehash(String id) throws IOException {
+        String newID;
+        try (InputStream in = Blob.openStream(id)) {
+            newID = Blob.hash(in);
+        }
+        if (!newID.equals(id) && !ObjectStore.contains(newID, Main.BLOB)) {
+            Deflater deflater = new Deflater(Config.compressionLevel());
+            try (InputStream in = new DeflaterInputStream(Blob.openStream(id), deflater, Blob.CHUNK_SIZE)) {
+                ObjectStore.write(newID, in, Main.BLOB);
+            } finally {
+                deflater.end();
+            }
+        }
+        return newID;
+    }
+}
@@ -0,0 +1,75 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* Class for in-process cache of decoded commits and trees. Objects are weighted by size of their encoded contents,
+ * and least recently used objects are evicted once total weight exceeds the configured limit. */
+public class ObjectCache {
+    static final int DEFAULT_LIMIT = 32 * 1024 * 1024;  // Default cache limit in bytes
+    static final int ENTRY_OVERHEAD = 64;              // Estimated bytes used by cache entry itself
+
+    private static LinkedHashMap<String, Object[]> _entries = new LinkedHashMap<>(16, 0.75f, true); // {Key: {Object, Weight}}
+    private static long _weight;                        // Total weight of cached objects
+    private static long _limit = -1;                    // Maximum total weight, read from config on first use
+    static long _hits;                                  // Number of lookups answered by cache
+    static long _misses;                                // Number of lookups not answered by cache
+
+    /** Get cached object with given full identifier. Returns null if object is not cached. */
+    static Object get(String id, File location) {
+        Object[] entry = _entries.get(key(id, location));
+        if (entry == null) {
+            _misses += 1;
+            return null;
+        }
+        _hits += 1;
+        return entry[0];
+    }
+
+    /** Add decoded object with given encoded size to cache, evicting least recently used objects if needed */
+    static void put(String id, File location, Object value, int size) {
+        if (_limit < 0) {
+            _limit = Config.getInt(Config.CACHE_SIZE, DEFAULT_LIMIT);
+        }
+        long weight = size + ENTRY_OVERHEAD;
+        if (weight > _limit) {
+            return;
+        }
+        Object[] previous = _entries.put(key(id, location), new Object[]{value, weight});
+        if (previous != null) {
+            _weight -= (long) previous[1];
+        }
+        _weight += weight;
+
+        // Note: iteration order of access-ordered map starts with least recently used entry
+        Iterator<Map.Entry<String, Object[]>> iter = _entries.entrySet().iterator();
+        while (_weight > _limit && iter.hasNext()) {
+            _weight -= (long) iter.next().getValue()[1];
+            iter.remove();
+        }
+    }
+
+    /** Remove object from cache. Used when stored object is replaced. */
+    static void remove(String id, File location) {
+        Object[] previous = _entries.remove(key(id, location));
+        if (previous != null) {
+            _weight -= (long) previous[1];
+        }
+    }
+
+    /** Remove all objects from cache and reset counters */
+    static void clear() {
+        _entries.clear();
+        _weight = 0;
+        _limit = -1;
+        _hits = 0;
+        _misses = 0;
+    }
+
+    /** Get cache key of object */
+    private static String key(String id, File location) {
+        return location.getName() + "/" + id;
+    }
+}
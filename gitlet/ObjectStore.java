@@ -0,0 +1,164 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+
+/* Class for reading and writing gitlet objects. Objects are looked up as loose files first, then in packfiles. */
+public class ObjectStore {
+
+    /** Read raw contents of object with given identifier. Returns null if object does not exist. */
+    static byte[] read(String id, File location) {
+        File loose = looseFile(id, location);
+        if (loose.isFile()) {
+            return Utils.readContents(loose);
+        }
+        return Pack.read(id, location);
+    }
+
+    /** Open stream over raw contents of object with given identifier. Returns null if object does not exist. */
+    static InputStream open(String id, File location) {
+        File loose = looseFile(id, location);
+        if (loose.isFile()) {
+            try {
+                return new FileInputStream(loose);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return Pack.open(id, location);
+    }
+
+    /** Read object with given (possibly abbreviated) identifier using DECODER, which is given the full identifier
+     *  and encoded contents. Decoded objects are cached, so each object is read at most once per process.
+     *  Returns null if object does not exist. */
+    @SuppressWarnings("unchecked")
+    static <T> T readObject(String id, File location, BiFunction<String, byte[], T> decoder) {
+        // Note: full identifiers are looked up in cache before checking object exists on disk
+        if (id != null && id.length() == Utils.UID_LENGTH) {
+            Object cached = ObjectCache.get(id, location);
+            if (cached != null) {
+                return (T) cached;
+            }
+        }
+        String fullID = resolve(id, location);
+        if (fullID == null) {
+            return null;
+        } else if (!fullID.equals(id)) {
+            Object cached = ObjectCache.get(fullID, location);
+            if (cached != null) {
+                return (T) cached;
+            }
+        }
+        byte[] contents = read(fullID, location);
+        if (contents == null) {
+            return null;
+        }
+        T object = decoder.apply(fullID, contents);
+        ObjectCache.put(fullID, location, object, contents.length);
+        return object;
+    }
+
+    /** Write object contents as loose file. Skips objects that are already stored. */
+    static void write(String id, byte[] contents, File location) {
+        write(id, new ByteArrayInputStream(contents), location);
+    }
+
+    /** Write object contents read from given stream as loose file. Skips objects that are already stored.
+     *  Note: contents are copied into temporary file first, so partially written objects are never visible. */
+    static void write(String id, InputStream contents, File location) {
+        if (contains(id, location)) {
+            return;
+        }
+        try {
+            // Create folder based on first two characters of object identifier
+            File folder = Utils.join(location, id.substring(0, 2));
+            folder.mkdir();
+            File temp = File.createTempFile("tmp-", null, location);
+            try {
+                Files.copy(contents, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp.toPath(), looseFile(id, location).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                temp.delete();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Replace contents of stored object. Note: loose objects are read before packed objects, so a packed
+     *  object is replaced by writing a loose copy. Used when upgrading objects in place. */
+    static void replace(String id, byte[] contents, File location) {
+        ObjectCache.remove(id, location);
+        looseFile(id, location).delete();
+        Utils.join(location, id.substring(0, 2)).mkdir();
+        Utils.writeContents(looseFile(id, location), (Object) contents);
+    }
+
+    /** Check if object with given full identifier is stored (loose or packed) */
+    static boolean contains(String id, File location) {
+        return looseFile(id, location).isFile() || Pack.contains(id, location);
+    }
+
+    /** Return full object identifier from given (possibly abbreviated) identifier. Returns null if
+     *  no object, or more than one object, matches the abbreviation. */
+    static String resolve(String id, File location) {
+        if (id == null || id.length() < 2 || id.length() > Utils.UID_LENGTH || !id.matches("[0-9a-f]+")) {
+            return null;
+        } else if (id.length() == Utils.UID_LENGTH) {
+            return contains(id, location) ? id : null;
+        }
+        // Note: only lists folder for first two characters instead of every object folder
+        TreeSet<String> matches = new TreeSet<>();
+        String[] names = Utils.join(location, id.substring(0, 2)).list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(id.substring(2))) {
+                    matches.add(id.substring(0, 2) + name);
+                }
+            }
+        }
+        matches.addAll(Pack.findByPrefix(id, location));
+        return matches.size() == 1 ? matches.first() : null;
+    }
+
+    /** List identifiers of all objects stored in given location, in sorted order */
+    static List<String> list(File location) {
+        TreeSet<String> ids = new TreeSet<>(listLoose(location));
+        ids.addAll(Pack.list(location));
+        return new ArrayList<>(ids);
+    }
+
+    /** List identifiers of all loose objects in given location */
+    static List<String> listLoose(File location) {
+        ArrayList<String> ids = new ArrayList<>();
+        File[] folders = location.listFiles();
+        if (folders == null) {
+            return ids;
+        }
+        for (File folder : folders) {
+            // Note: temporary files are written directly in location, so only folders are listed
+            String[] names = folder.list();
+            if (names == null) {
+                continue;
+            }
+            for (String name : names) {
+                ids.add(folder.getName() + name);
+            }
+        }
+        return ids;
+    }
+
+    /** Get loose file path of object with given identifier */
+    static File looseFile(String id, File location) {
+        return Utils.join(location, id.substring(0, 2), id.substring(2));
+    }
+}
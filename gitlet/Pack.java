@@ -0,0 +1,523 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/* Class for packfiles. A pack stores many objects in one append-only file and is read through a sorted index.
+ *
+ * Pack layout:  "PACK" | version | entries [type (1 byte) | length (8 bytes) | contents] | SHA-1 of preceding bytes
+ * Index layout: "PIDX" | version | fanout (256 ints) | sorted ids (20 bytes each) | offsets (8 bytes each)
+ *               | types (1 byte each) | SHA-1 of pack | SHA-1 of preceding index bytes
+ */
+public class Pack {
+    static final int VERSION = 1;               // Pack and index format version
+    static final int ID_LENGTH = 20;            // Length of binary object identifier
+    static final int FANOUT_SIZE = 256;         // Number of entries in fanout table
+    static final int HEADER_SIZE = 8;           // Length of magic and version header
+    static final List<File> LOCATIONS = Arrays.asList(Main.COMMITS, Main.TREE, Main.BLOB); // Object type per location
+
+    private static ArrayList<Pack> _packs;      // Packs loaded by current process
+
+    File _packFile;                             // Pack file
+    File _indexFile;                            // Index file
+    MappedByteBuffer _index;                    // Memory mapped index file
+    FileChannel _channel;                       // Open channel to pack file
+    int _count;                                 // Number of objects in pack
+
+    /** Constructor. Opens pack with given index file. */
+    Pack(File indexFile) throws IOException {
+        _indexFile = indexFile;
+        String name = indexFile.getName();
+        _packFile = Utils.join(indexFile.getParentFile(), name.substring(0, name.length() - 4) + ".pack");
+        try (FileChannel indexChannel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            _index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+        }
+        if (_index.getInt(0) != magic("PIDX") || _index.getInt(4) != VERSION) {
+            throw Utils.error("Unknown pack index format: %s", name);
+        }
+        _count = _index.getInt(HEADER_SIZE + (FANOUT_SIZE - 1) * 4);
+        _channel = FileChannel.open(_packFile.toPath(), StandardOpenOption.READ);
+
+        // Check index belongs to pack by comparing pack checksums
+        ByteBuffer trailer = ByteBuffer.allocate(ID_LENGTH);
+        _channel.read(trailer, _channel.size() - ID_LENGTH);
+        byte[] expected = new byte[ID_LENGTH];
+        _index.get(checksumOffset(), expected);
+        if (!Arrays.equals(trailer.array(), expected)) {
+            throw Utils.error("Pack index does not match pack: %s", name);
+        }
+    }
+
+    /* ----- Reading objects from all packs ----- */
+
+    /** Get packs in pack directory. Packs are opened once per process.
+     *  Note: synchronized since blobs may be read from several threads during checkout. */
+    static synchronized ArrayList<Pack> packs() {
+        if (_packs == null) {
+            ArrayList<Pack> packs = new ArrayList<>();
+            File[] files = Main.PACK.listFiles();
+            if (files != null) {
+                Arrays.sort(files);
+                for (File file : files) {
+                    if (file.getName().startsWith("pack-") && file.getName().endsWith(".idx")) {
+                        try {
+                            packs.add(new Pack(file));
+                        } catch (IOException excp) {
+                            throw new IllegalArgumentException(excp.getMessage());
+                        }
+                    }
+                }
+            }
+            _packs = packs;
+        }
+        return _packs;
+    }
+
+    /** Close all open packs so they are reloaded on next read */
+    static synchronized void reload() {
+        if (_packs != null) {
+            for (Pack pack : _packs) {
+                pack.close();
+            }
+        }
+        _packs = null;
+    }
+
+    /** Read contents of packed object. Returns null if no pack contains object. */
+    static byte[] read(String id, File location) {
+        byte[] binaryID = Utils.toBytes(id);
+        for (Pack pack : packs()) {
+            int pos = pack.find(binaryID);
+            if (pos >= 0 && pack.type(pos) == typeOf(location)) {
+                return pack.readEntry(pos);
+            }
+        }
+        return null;
+    }
+
+    /** Open stream over contents of packed object. Returns null if no pack contains object. */
+    static InputStream open(String id, File location) {
+        byte[] binaryID = Utils.toBytes(id);
+        for (Pack pack : packs()) {
+            int pos = pack.find(binaryID);
+            if (pos >= 0 && pack.type(pos) == typeOf(location)) {
+                return pack.openEntry(pos);
+            }
+        }
+        return null;
+    }
+
+    /** Check if any pack contains object */
+    static boolean contains(String id, File location) {
+        byte[] binaryID = Utils.toBytes(id);
+        for (Pack pack : packs()) {
+            int pos = pack.find(binaryID);
+            if (pos >= 0 && pack.type(pos) == typeOf(location)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Find all packed objects whose identifier starts with given abbreviated identifier */
+    static List<String> findByPrefix(String prefix, File location) {
+        ArrayList<String> matches = new ArrayList<>();
+        int first = Integer.parseInt(prefix.substring(0, 2), 16);
+        for (Pack pack : packs()) {
+            for (int i = pack.fanout(first - 1); i < pack.fanout(first); i++) {
+                String id = pack.id(i);
+                if (id.startsWith(prefix) && pack.type(i) == typeOf(location)) {
+                    matches.add(id);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /** List identifiers of all packed objects in given location */
+    static List<String> list(File location) {
+        ArrayList<String> ids = new ArrayList<>();
+        for (Pack pack : packs()) {
+            for (int i = 0; i < pack._count; i++) {
+                if (pack.type(i) == typeOf(location)) {
+                    ids.add(pack.id(i));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /* ----- Repack command ----- */
+
+    /**
+     * Repack command. Folds all loose objects and existing packs into a single new pack, then removes them.
+     */
+    static void repack() throws IOException {
+        ArrayList<Pack> oldPacks = packs();
+        ArrayList<File> looseFiles = new ArrayList<>();
+        for (File location : LOCATIONS) {
+            for (String id : ObjectStore.listLoose(location)) {
+                looseFiles.add(ObjectStore.looseFile(id, location));
+            }
+        }
+        // Note: nothing to fold together
+        if (looseFiles.isEmpty() && oldPacks.size() <= 1) {
+            return;
+        }
+
+        // Write loose objects, then objects of existing packs that are not already written
+        Writer writer = new Writer();
+        // Note: objects are streamed into new pack, so large blobs are never fully read into memory
+        for (File location : LOCATIONS) {
+            for (String id : ObjectStore.listLoose(location)) {
+                File file = ObjectStore.looseFile(id, location);
+                try (InputStream in = new FileInputStream(file)) {
+                    writer.add(id, location, in, file.length());
+                }
+            }
+        }
+        for (Pack pack : oldPacks) {
+            for (int i = 0; i < pack._count; i++) {
+                File location = LOCATIONS.get(pack.type(i) - 1);
+                String id = pack.id(i);
+                if (!writer.contains(id, location)) {
+                    try (InputStream in = pack.openEntry(i)) {
+                        writer.add(id, location, in, pack.length(i));
+                    }
+                }
+            }
+        }
+        File newIndex = writer.finish();
+
+        // Remove packed loose objects and old packs
+        reload();
+        for (File file : looseFiles) {
+            file.delete();
+            file.getParentFile().delete();
+        }
+        for (Pack pack : oldPacks) {
+            if (!pack._indexFile.equals(newIndex)) {
+                pack._packFile.delete();
+                pack._indexFile.delete();
+            }
+        }
+    }
+
+    /* ----- Single pack methods ----- */
+
+    /** Find position of object in pack using fanout table and binary search. Returns -1 if not found. */
+    int find(byte[] id) {
+        int first = id[0] & 0xff;
+        int low = fanout(first - 1);
+        int high = fanout(first) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareID(mid, id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Get number of objects whose first identifier byte is at most given value */
+    int fanout(int firstByte) {
+        if (firstByte < 0) {
+            return 0;
+        }
+        return _index.getInt(HEADER_SIZE + firstByte * 4);
+    }
+
+    /** Get identifier of object at given position as hexadecimal string */
+    String id(int pos) {
+        byte[] id = new byte[ID_LENGTH];
+        _index.get(idOffset(pos), id);
+        return Utils.toHex(id);
+    }
+
+    /** Get object type of object at given position */
+    byte type(int pos) {
+        return _index.get(idOffset(_count) + _count * 8 + pos);
+    }
+
+    /** Read contents of object at given position */
+    byte[] readEntry(int pos) {
+        long offset = _index.getLong(idOffset(_count) + pos * 8);
+        try {
+            ByteBuffer contents = ByteBuffer.allocate((int) length(pos));
+            while (contents.hasRemaining()) {
+                if (_channel.read(contents, offset + 9 + contents.position()) < 0) {
+                    throw Utils.error("Truncated pack: %s", _packFile.getName());
+                }
+            }
+            return contents.array();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Open stream over contents of object at given position. Contents are read from pack as stream is read. */
+    InputStream openEntry(int pos) {
+        long offset = _index.getLong(idOffset(_count) + pos * 8);
+        return new EntryStream(offset + 9, offset + 9 + length(pos));
+    }
+
+    /** Get length of contents of object at given position */
+    long length(int pos) {
+        long offset = _index.getLong(idOffset(_count) + pos * 8);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(9);
+            _channel.read(header, offset);
+            return header.getLong(1);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Verify pack and index checksums. Returns true if both are intact. */
+    boolean verify() throws IOException {
+        byte[] packChecksum = new byte[ID_LENGTH];
+        byte[] indexChecksum = new byte[ID_LENGTH];
+        _index.get(checksumOffset(), packChecksum);
+        _index.get(checksumOffset() + ID_LENGTH, indexChecksum);
+
+        byte[] packContents = Utils.readContents(_packFile);
+        MessageDigest md = digest();
+        md.update(packContents, 0, packContents.length - ID_LENGTH);
+        if (!Arrays.equals(md.digest(), packChecksum)) {
+            return false;
+        }
+        byte[] indexContents = Utils.readContents(_indexFile);
+        md.update(indexContents, 0, indexContents.length - ID_LENGTH);
+        return Arrays.equals(md.digest(), indexChecksum);
+    }
+
+    /** Close pack file channel */
+    void close() {
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            // Note: pack only read from, nothing is lost
+        }
+    }
+
+    /** Compare identifier at given position with given identifier */
+    private int compareID(int pos, byte[] id) {
+        int offset = idOffset(pos);
+        for (int i = 0; i < ID_LENGTH; i++) {
+            int cmp = Integer.compare(_index.get(offset + i) & 0xff, id[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /** Get index offset of identifier at given position */
+    private int idOffset(int pos) {
+        return HEADER_SIZE + FANOUT_SIZE * 4 + pos * ID_LENGTH;
+    }
+
+    /** Get index offset of trailing checksums */
+    private int checksumOffset() {
+        return idOffset(_count) + _count * 9;
+    }
+
+    /* ----- Helper methods ----- */
+
+    /** Get pack object type of given object location */
+    static byte typeOf(File location) {
+        return (byte) (LOCATIONS.indexOf(location) + 1);
+    }
+
+    /** Convert four character magic string into integer */
+    static int magic(String name) {
+        return ByteBuffer.wrap(name.getBytes()).getInt();
+    }
+
+    /** Create SHA-1 message digest */
+    static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Class for reading contents of single pack entry. Uses positional reads so entries can be read independently. */
+    class EntryStream extends InputStream {
+        long _position;                         // Position of next byte in pack file
+        long _end;                              // Position after last byte of entry
+
+        /** Constructor */
+        EntryStream(long start, long end) {
+            _position = start;
+            _end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (_position >= _end) {
+                return -1;
+            }
+            int n = (int) Math.min(len, _end - _position);
+            int read = _channel.read(ByteBuffer.wrap(b, off, n), _position);
+            if (read > 0) {
+                _position += read;
+            }
+            return read;
+        }
+    }
+
+    /** Class for writing new pack and its index. Objects are appended to pack as they are added, and can be read
+     *  back before pack is finished. */
+    static class Writer {
+        ArrayList<Object[]> _entries;           // Written objects as {binary id, offset, type}
+        HashMap<String, Long> _written;         // {Identifier of written object with its type: Offset in pack}
+        DigestOutputStream _out;                // Output stream to temporary pack file
+        File _tempFile;                         // Temporary pack file
+        long _offset;                           // Current offset in pack file
+
+        /** Constructor. Creates temporary pack file inside pack directory. */
+        Writer() throws IOException {
+            Main.PACK.mkdir();
+            _entries = new ArrayList<>();
+            _written = new HashMap<>();
+            _tempFile = File.createTempFile("tmp-pack-", ".pack", Main.PACK);
+            _out = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(_tempFile)), digest());
+            _out.write("PACK".getBytes());
+            new DataOutputStream(_out).writeInt(VERSION);
+            _offset = HEADER_SIZE;
+        }
+
+        /** Append object with given length read from stream to pack */
+        void add(String id, File location, InputStream contents, long length) throws IOException {
+            DataOutputStream data = new DataOutputStream(_out);
+            data.writeByte(typeOf(location));
+            data.writeLong(length);
+            if (contents.transferTo(_out) != length) {
+                throw Utils.error("Object %s changed while being packed.", id);
+            }
+            _entries.add(new Object[]{Utils.toBytes(id), _offset, typeOf(location)});
+            _written.put(typeOf(location) + id, _offset);
+            _offset += 9 + length;
+        }
+
+        /** Append object with given contents to pack */
+        void add(String id, File location, byte[] contents) throws IOException {
+            add(id, location, new ByteArrayInputStream(contents), contents.length);
+        }
+
+        /** Check if object was already added to pack */
+        boolean contains(String id, File location) {
+            return _written.containsKey(typeOf(location) + id);
+        }
+
+        /** Read contents of object added to pack. Returns null if object was not added. */
+        byte[] read(String id, File location) throws IOException {
+            Long offset = _written.get(typeOf(location) + id);
+            if (offset == null) {
+                return null;
+            }
+            // Note: buffered entries are written to file first, so entry can be read from temporary pack
+            _out.flush();
+            try (RandomAccessFile file = new RandomAccessFile(_tempFile, "r")) {
+                file.seek(offset + 1);
+                byte[] contents = new byte[(int) file.readLong()];
+                file.readFully(contents);
+                return contents;
+            }
+        }
+
+        /** Remove temporary pack file without writing pack */
+        void abort() {
+            try {
+                _out.close();
+            } catch (IOException excp) {
+                // Note: pack is discarded, nothing is lost
+            }
+            _tempFile.delete();
+        }
+
+        /** Write pack checksum and index. Returns index file of finished pack. */
+        File finish() throws IOException {
+            byte[] packChecksum = _out.getMessageDigest().digest();
+            _out.on(false);
+            _out.write(packChecksum);
+            _out.close();
+
+            // Sort entries by binary identifier
+            _entries.sort(Comparator.comparing(entry -> (byte[]) entry[0], Arrays::compareUnsigned));
+            int[] fanout = new int[FANOUT_SIZE];
+            for (Object[] entry : _entries) {
+                fanout[((byte[]) entry[0])[0] & 0xff] += 1;
+            }
+            for (int i = 1; i < FANOUT_SIZE; i++) {
+                fanout[i] += fanout[i - 1];
+            }
+
+            // Write index contents
+            String name = "pack-" + Utils.toHex(packChecksum);
+            File tempIndex = File.createTempFile("tmp-idx-", ".idx", Main.PACK);
+            DigestOutputStream indexOut = new DigestOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempIndex)), digest());
+            DataOutputStream data = new DataOutputStream(indexOut);
+            data.write("PIDX".getBytes());
+            data.writeInt(VERSION);
+            for (int count : fanout) {
+                data.writeInt(count);
+            }
+            for (Object[] entry : _entries) {
+                data.write((byte[]) entry[0]);
+            }
+            for (Object[] entry : _entries) {
+                data.writeLong((long) entry[1]);
+            }
+            for (Object[] entry : _entries) {
+                data.writeByte((byte) entry[2]);
+            }
+            data.write(packChecksum);
+            data.flush();
+            byte[] indexChecksum = indexOut.getMessageDigest().digest();
+            data.write(indexChecksum);
+            data.close();
+
+            // Note: pack renamed before index so index never points to missing pack
+            File packFile = Utils.join(Main.PACK, name + ".pack");
+            File indexFile = Utils.join(Main.PACK, name + ".idx");
+            if (!_tempFile.renameTo(packFile) || !tempIndex.renameTo(indexFile)) {
+                throw Utils.error("Unable to write pack: %s", name);
+            }
+            return indexFile;
+        }
+    }
+}
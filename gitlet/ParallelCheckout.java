@@ -0,0 +1,113 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/* Class for writing files of checkout in parallel. Checking, reading and writing each file runs as a separate task
+ * on a bounded thread pool, and stat data of written files is recorded in the stage by the calling thread once every
+ * task finished.
+ * Note: errors are reported for the first failing file in name order once every task finished, so the error shown
+ * does not depend on thread timing. */
+public class ParallelCheckout {
+
+    /**
+     * Write given files into current working directory, skipping files whose working version already matches.
+     * Stat data of written files is recorded in given stage.
+     */
+    static void write(HashMap<String, String> filesList, Stage stage) throws IOException {
+        TreeMap<String, String> files = new TreeMap<>(filesList);
+        int threads = Math.min(Config.checkoutThreads(), files.size());
+        if (threads <= 1) {
+            for (String name : files.keySet()) {
+                record(stage, name, writeFile(stage, name, files.get(name)));
+            }
+            return;
+        }
+
+        // Note: packs are opened before tasks start so every thread shares the same open packs
+        Pack.packs();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "gitlet-checkout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            ArrayList<Future<FileStat>> results = new ArrayList<>();
+            for (String name : files.keySet()) {
+                results.add(pool.submit(() -> writeFile(stage, name, files.get(name))));
+            }
+            // Note: stat data is recorded only once every task finished, since running tasks read stage
+            Throwable error = null;
+            FileStat[] stats = new FileStat[results.size()];
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    stats[i] = results.get(i).get();
+                } catch (ExecutionException excp) {
+                    error = error == null ? excp.getCause() : error;
+                } catch (InterruptedException excp) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+            int i = 0;
+            for (String name : files.keySet()) {
+                record(stage, name, stats[i]);
+                i += 1;
+            }
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error != null) {
+                throw new IllegalArgumentException(error.getMessage());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Write blob with given sha1 into file unless working version already matches. Returns new stat data of file,
+     * or null if saved stat data is still valid. Note: only reads stage, which is not changed while tasks run, so
+     * can run on any thread.
+     */
+    private static FileStat writeFile(Stage stage, String name, String sha1) throws IOException {
+        File file = Utils.join(Main.USERDIR, name);
+        FileStat current = FileStat.of(file);
+        if (current != null) {
+            String cached = stage.cachedHash(name, current);
+            if (cached == null) {
+                current._sha1 = new Blob(file)._sha1;
+            }
+            if (sha1.equals(cached != null ? cached : current._sha1)) {
+                return cached != null ? null : current;
+            }
+        }
+        // Note: blob contents are decompressed while being copied into file
+        file.getParentFile().mkdirs();
+        try (InputStream blob = Blob.openStream(sha1)) {
+            Files.copy(blob, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        FileStat written = FileStat.of(file);
+        written._sha1 = sha1;
+        return written;
+    }
+
+    /** Record new stat data of file in stage */
+    private static void record(Stage stage, String name, FileStat stat) {
+        if (stat != null) {
+            stage._stats.put(name, stat);
+            stage._isStatsChanged = true;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package gitlet;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/* Class for walking commit history without recursion. Parents are found through commit-graph rows, so commits are
+ * only read when they are returned by the walk. Pending commits are kept in a priority queue of row numbers, and each
+ * commit is returned at most once even if it is reachable through several merge parents. */
+public class RevWalk implements Iterator<Commit>, Iterable<Commit> {
+
+    /** Order in which commits are returned */
+    enum Order {
+        TOPO,           // Children before parents (Note: ordered by generation number, then timestamp)
+        DATE,           // Newest timestamp first
+        FIRST_PARENT    // Only first parent of each commit is followed
+    }
+
+    Order _order;               // Order of walk
+    CommitGraph _graph;         // Commit-graph used to find parents
+    BitSet _seen;               // Rows that were added to queue
+    int[] _queue;               // Binary heap of pending rows
+    int _size;                  // Number of pending rows
+
+    /** Constructor */
+    public RevWalk(Order order) {
+        _order = order;
+        _graph = CommitGraph.get();
+        _seen = new BitSet();
+        _queue = new int[16];
+    }
+
+    /** Add commit with given identifier as starting point of walk. Unknown commits are ignored. */
+    public RevWalk start(String id) {
+        if (id != null) {
+            int row = _graph.row(id);
+            if (row != CommitGraph.NO_PARENT) {
+                push(row);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return _size > 0;
+    }
+
+    /** Get identifier of next commit without reading commit */
+    public String nextID() {
+        if (_size == 0) {
+            throw new NoSuchElementException();
+        }
+        int row = pop();
+        int[] parents = _graph.parents(row);
+        for (int i = 0; i < parents.length && (i == 0 || _order != Order.FIRST_PARENT); i++) {
+            push(parents[i]);
+        }
+        return _graph._ids.get(row);
+    }
+
+    @Override
+    public Commit next() {
+        return Commit.getByID(nextID());
+    }
+
+    @Override
+    public Iterator<Commit> iterator() {
+        return this;
+    }
+
+    /** Add row to queue unless it was already added */
+    private void push(int row) {
+        if (_seen.get(row)) {
+            return;
+        }
+        _seen.set(row);
+        if (_size == _queue.length) {
+            _queue = Arrays.copyOf(_queue, _size * 2);
+        }
+        // Note: sift up new row
+        int i = _size++;
+        while (i > 0 && before(row, _queue[(i - 1) / 2])) {
+            _queue[i] = _queue[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        _queue[i] = row;
+    }
+
+    /** Remove first row from queue */
+    private int pop() {
+        int first = _queue[0];
+        int last = _queue[--_size];
+        // Note: sift down last row from top of heap
+        int i = 0;
+        while (2 * i + 1 < _size) {
+            int child = 2 * i + 1;
+            if (child + 1 < _size && before(_queue[child + 1], _queue[child])) {
+                child += 1;
+            }
+            if (!before(_queue[child], last)) {
+                break;
+            }
+            _queue[i] = _queue[child];
+            i = child;
+        }
+        _queue[i] = last;
+        return first;
+    }
+
+    /** Check if row A is returned before row B */
+    private boolean before(int a, int b) {
+        int generationA = _graph._generations[a];
+        int generationB = _graph._generations[b];
+        long timeA = _graph._times[a];
+        long timeB = _graph._times[b];
+        if (_order == Order.DATE && timeA != timeB) {
+            return timeA > timeB;
+        } else if (generationA != generationB) {
+            return generationA > generationB;
+        } else if (timeA != timeB) {
+            return timeA > timeB;
+        }
+        return a > b;
+    }
+}
@@ -1,13 +1,31 @@
 package gitlet;
 
 import java.io.*;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
 
 
 /* Class for add command and remove command */
 public class Stage implements Serializable {
+    private static final long serialVersionUID = 2386732343730822374L; // Note: allows reading serialized stage
     HashMap<String, String> _additions;  // Files staged for addition
     HashMap<String, String> _deletions;  // Files staged for deletion
+    transient HashMap<String, FileStat> _stats; // Stat data and hash of files in working directory
+    transient long _indexTime;           // Modification time of index when stage was read (nanoseconds)
+    transient boolean _isStatsChanged;   // Whether stat data changed since stage was read
+
+    private static boolean _isShared;    // Whether stage is kept in memory and shared by commands of a batch
+    private static Stage _shared;        // Stage shared by commands of a batch, or null if not read yet
+    private static boolean _isUnsaved;   // Whether shared stage changed since it was written to disk
 
     /**
      * Constructor
@@ -16,58 +34,113 @@ public class Stage implements Serializable {
         // Note: Hashmap is configured as: {Name of file: SHA1 hash}
         _additions = new HashMap<>();    // Files staged for addition
         _deletions = new HashMap<>();    // Files staged for deletion
+        _stats = new HashMap<>();        // Stat cache: {Name of file: Stat data}
     }
 
     /**
      * Adds file to stage if exists. If applicable, removed file staged for deletion. Does not add file is not contents has not changed.
      */
     public static void add(String fileName) throws IOException {
+        add(Collections.singletonList(fileName));
+    }
 
-        // Check if file deleted or does not exist
-        File file = Utils.join(Main.USERDIR, fileName);
-        if (!file.exists()) {
+    /**
+     * Adds files matching given paths to stage. Paths are file names, glob patterns, or "." for every file in current
+     * working directory. Nothing is staged if a path matches no file.
+     * Note: files are hashed in parallel on the common ForkJoin pool, each distinct blob is written once, and stage
+     * is written once at the end.
+     */
+    public static void add(List<String> paths) throws IOException {
+        Stage stage = Stage.read();
 
-            // Remove unknown file from stage and deletion stage if exists
-            if (restore(fileName)) {
+        // Find files matching each path
+        // Note: stage is only changed once every path is found, since stage may be shared by commands of a batch
+        TreeSet<String> fileNames = new TreeSet<>();
+        ArrayList<String> restored = new ArrayList<>();
+        for (String path : paths) {
+            List<String> matches = match(path);
+            if (!matches.isEmpty()) {
+                fileNames.addAll(matches);
+            } else if (stage._deletions.containsKey(path)) {
+                restored.add(path);
+            } else {
+                System.out.print("File does not exist.");
                 return;
             }
-            System.out.print("File does not exist.");
-            return;
         }
-
-        // Create new file blob
-        Blob newBlob = new Blob(file);
-
-        // Note: Checks if there is identical version of file in current commit
-        if (isIdenticalBlob(newBlob)) {
-            removeFromIndex(newBlob._name, Stage.read());
-            return;
+        // Remove deleted files from deletion stage
+        stage._deletions.keySet().removeAll(restored);
+
+        // Hash files in parallel
+        // Note: file is only hashed if its stat data changed since it was last hashed
+        ArrayList<String> names = new ArrayList<>(fileNames);
+        FileStat[] stats = new FileStat[names.size()];
+        IntStream.range(0, names.size()).parallel().forEach(i -> stats[i] = stage.statFile(names.get(i)));
+
+        // Update stage, and collect distinct blobs not stored yet
+        HashMap<String, String> currentBlobs = Commit.getCurrentBlobs();
+        TreeMap<String, File> newBlobs = new TreeMap<>();    // {SHA1 hash: File with contents}
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            String sha1 = stats[i]._sha1;
+            stage._stats.put(name, stats[i]);
+            stage._deletions.remove(name);
+            // Note: Checks if there is identical version of file in current commit
+            if (sha1.equals(currentBlobs.get(name))) {
+                stage._additions.remove(name);
+            } else {
+                stage._additions.put(name, sha1);
+                if (!ObjectStore.contains(sha1, Main.BLOB)) {
+                    newBlobs.putIfAbsent(sha1, Utils.join(Main.USERDIR, name));
+                }
+            }
         }
 
-        // Write file blob to disk
-        newBlob.write();
+        // Write file blobs to disk in parallel
+        // Note: settings are read before blobs are written on several threads
+        Config.compressionLevel();
+        newBlobs.entrySet().parallelStream().forEach(entry -> {
+            try {
+                new Blob(entry.getValue(), entry.getKey()).write();
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        });
 
-        // Create new stage and add blob
-        HashMap<String, String> newStage = new HashMap<>();
-        newStage.put(newBlob._name, newBlob._sha1);
+        // Write update stage to disk
+        write(stage);
+    }
 
-        // Check if previous stage contains same copy of added file
-        Stage previousStage = Stage.read();
-        if (previousStage._additions.containsKey(newBlob._name) &&
-            previousStage._additions.get(newBlob._name).equals(newBlob._sha1)) {
-            return;
+    /** Get paths of files in current working directory matching given path. A directory matches every file under
+     *  it, and glob patterns are matched against paths from top of working directory. Note: an existing file or
+     *  directory is matched by name first, so names with glob characters (ex: a[1].txt) are not read as patterns. */
+    private static List<String> match(String path) {
+        if (path.equals(".")) {
+            return Utils.getWorkingFiles();
         }
-
-        // Check if file staged for deletion, remove form deletion hashmap
-        if (previousStage._deletions.containsValue(newBlob._sha1)) {
-            restore(newBlob._name);
+        File file = Utils.join(Main.USERDIR, path);
+        if (file.isFile()) {
+            return Collections.singletonList(path);
+        } else if (file.isDirectory()) {
+            ArrayList<String> matches = new ArrayList<>();
+            String prefix = path.endsWith("/") ? path : path + "/";
+            for (String fileName : Utils.getWorkingFiles()) {
+                if (fileName.startsWith(prefix)) {
+                    matches.add(fileName);
+                }
+            }
+            return matches;
+        } else if (!path.matches(".*[*?\\[{].*")) {
+            return new ArrayList<>();
         }
-
-        // Update previous stage with current stage contents
-        previousStage._additions.putAll(newStage);
-
-        // Write update stage to disk
-        write(previousStage);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + path);
+        ArrayList<String> matches = new ArrayList<>();
+        for (String fileName : Utils.getWorkingFiles()) {
+            if (matcher.matches(Paths.get(fileName))) {
+                matches.add(fileName);
+            }
+        }
+        return matches;
     }
 
     /**
@@ -95,7 +168,7 @@ public class Stage implements Serializable {
                  stage._deletions.containsKey(name)) {
             stage._additions.remove(name);
             stage._deletions.remove(name);
-            Utils.writeObject(Main.STAGE, stage);
+            write(stage);
             return true;
         }
         return false;
@@ -113,7 +186,7 @@ public class Stage implements Serializable {
         if (currentBlobList.containsKey(fileName)) {
 
             // Remove file from current working directory (CWD)
-            Utils.join(Main.USERDIR,fileName).delete();
+            Utils.deleteFile(fileName);
 
             // Stage file for deletion
             stage._deletions.put(fileName,currentBlobList.get(fileName));
@@ -139,32 +212,163 @@ public class Stage implements Serializable {
     }
 
     /**
-     * Checks if given Blob is identical to version in current commit.
+     * Get hash of file in current working directory. File is only hashed again if its size, modification time or
+     * inode changed since it was last hashed. Returns null if file does not exist.
+     * Note: stat data recorded at same time or after index was written is not trusted (racy timestamp), since file
+     * could have been changed again within the same timestamp.
      */
-    public static boolean isIdenticalBlob(Blob blob) {
-        HashMap<String, String> curr = Commit.getCurrentBlobs();
-        return curr.containsKey(blob._name) && curr.get(blob._name).equals(blob._sha1);
+    String hashFile(String fileName) {
+        File file = Utils.join(Main.USERDIR, fileName);
+        FileStat current = FileStat.of(file);
+        if (current == null) {
+            _isStatsChanged |= _stats.remove(fileName) != null;
+            return null;
+        }
+        String cached = cachedHash(fileName, current);
+        if (cached != null) {
+            return cached;
+        }
+        current._sha1 = new Blob(file)._sha1;
+        _stats.put(fileName, current);
+        _isStatsChanged = true;
+        return current._sha1;
+    }
+
+    /** Get current stat data of file with hash of its contents, using saved hash if stat data is unchanged.
+     *  Note: does not change stage, so can be called from several threads. */
+    FileStat statFile(String fileName) {
+        File file = Utils.join(Main.USERDIR, fileName);
+        FileStat current = FileStat.of(file);
+        if (current == null) {
+            throw Utils.error("File does not exist.");
+        }
+        String cached = cachedHash(fileName, current);
+        current._sha1 = cached != null ? cached : new Blob(file)._sha1;
+        return current;
     }
 
-    /** Read Stage from disk */
+    /** Get saved hash of file if its saved stat data matches given current stat data and is not racy.
+     *  Returns null if file must be hashed. Note: does not change stage, so can be called from several threads. */
+    String cachedHash(String fileName, FileStat current) {
+        FileStat saved = _stats.get(fileName);
+        if (saved != null && saved.matches(current) && saved._mtime < _indexTime) {
+            return saved._sha1;
+        }
+        return null;
+    }
+
+    /** Read Stage from disk. While stage is shared, stage read by first command is returned to every command. */
     public static Stage read() {
+        if (_isShared && _shared != null) {
+            return _shared;
+        }
         // Note: Never returns null since stage saved to disk during initialization
-        return Utils.readObject(Main.STAGE, Stage.class);
-
+        Stage stage = decode(Utils.readContents(Main.STAGE));
+        stage._indexTime = FileStat.mtime(Main.STAGE);
+        if (_isShared) {
+            _shared = stage;
+        }
+        return stage;
     }
 
     /**
-     * Write Stage to disk
+     * Write Stage to disk. While stage is shared, stage is only kept in memory until flushed.
+     * Note: stat data of files modified at same time or after index was written is cleared,
+     * so these files are hashed again when stage is next read.
      */
     public static void write(Stage stage) {
-        Utils.writeObject(Main.STAGE, stage);
+        if (_isShared) {
+            _shared = stage;
+            _isUnsaved = true;
+            return;
+        }
+        save(stage);
+    }
+
+    /** Keep stage in memory so commands of a batch read and write stage without disk access */
+    static void share() {
+        _isShared = true;
+        _shared = null;
+        _isUnsaved = false;
+    }
+
+    /** Write shared stage to disk if it changed, and read stage from disk again for later commands */
+    static void flush() {
+        if (_isUnsaved) {
+            save(_shared);
+        }
+        _isShared = false;
+        _shared = null;
+        _isUnsaved = false;
+    }
+
+    /** Write given stage to index file */
+    private static void save(Stage stage) {
+        Utils.writeContents(Main.STAGE, (Object) stage.encode());
+        long indexTime = FileStat.mtime(Main.STAGE);
+        boolean isRacy = false;
+        for (FileStat stat : stage._stats.values()) {
+            if (stat._mtime >= indexTime) {
+                stat._mtime = 0;
+                isRacy = true;
+            }
+        }
+        if (isRacy) {
+            Utils.writeContents(Main.STAGE, (Object) stage.encode());
+        }
+        stage._indexTime = FileStat.mtime(Main.STAGE);
+        stage._isStatsChanged = false;
+    }
+
+    /** Encode stage in binary format */
+    public byte[] encode() {
+        Codec.Encoder out = new Codec.Encoder(Codec.STAGE);
+        out.writeEntries(_additions);
+        out.writeEntries(_deletions);
+        out.writeVarint(_stats.size());
+        for (Map.Entry<String, FileStat> entry : new TreeMap<>(_stats).entrySet()) {
+            FileStat stat = entry.getValue();
+            out.writeString(entry.getKey());
+            out.writeVarint(stat._size);
+            out.writeVarint(stat._mtime);
+            out.writeVarint(stat._inode);
+            out.writeID(stat._sha1);
+        }
+        return out.toByteArray();
+    }
+
+    /** Decode stage. Serialized stage written by older versions is also read. */
+    static Stage decode(byte[] contents) {
+        if (Codec.isSerialized(contents)) {
+            Stage stage = Utils.deserialize(contents, Stage.class);
+            stage._stats = new HashMap<>();
+            return stage;
+        }
+        return Codec.decode(contents, Codec.STAGE, in -> {
+            Stage stage = new Stage();
+            stage._additions = in.readEntries();
+            stage._deletions = in.readEntries();
+            // Note: stat data was added in format version 3
+            if (in._version >= 3) {
+                for (long i = in.readVarint(); i > 0; i--) {
+                    String name = in.readString();
+                    stage._stats.put(name, new FileStat(in.readVarint(), in.readVarint(), in.readVarint(), in.readID()));
+                }
+            }
+            return stage;
+        });
     }
 
     /**
-     * Clear current Stage and write new stage to disk.
+     * Clear current Stage and write new stage to disk. Note: stat data is kept, since files are unchanged.
      */
     public static void clear() {
-        write(new Stage());
+        // Note: index time is kept with stat data, since a shared stage is not saved (which sets it) until flushed
+        Stage old = read();
+        Stage stage = new Stage();
+        stage._stats = old._stats;
+        stage._indexTime = old._indexTime;
+        write(stage);
     }
 
     /** Check if preStage hashmap is empty */
@@ -6,22 +6,25 @@ import java.util.*;
 
 /* Class for status command */
 public class Status {
-    static Stage stage = Stage.read();
 
     /**
      * Constructor for Status command
      */
     public static void print() throws IOException {
+        // Note: stage is read when command runs, so status is correct for every command run by a daemon
+        Stage stage = Stage.read();
         // Print all branches created, but not removed
         printBranches();
         // Print all files staged for addition
-        printStagedFiles();
+        printStagedFiles(stage);
         // Print all files staged for deletion
-        printRemovedFiles();
-        // Print all files modified since current commit
-        printModifications();
-        // Print all files untracked in current commit
-        printUntracked();
+        printRemovedFiles(stage);
+        // Print all files modified since current commit, and all files untracked in current commit
+        printWorkingChanges(stage);
+        // Save stat data of files hashed while checking modifications
+        if (stage._isStatsChanged) {
+            Stage.write(stage);
+        }
     }
 
     /**
@@ -46,7 +49,7 @@ public class Status {
     /**
      * Print staged files in current branch.
      */
-    private static void printStagedFiles() {
+    private static void printStagedFiles(Stage stage) {
         System.out.println("=== Staged Files ===");
         if (!stage._additions.isEmpty()) {
             Iterator iter = stage._additions.entrySet().iterator();
@@ -61,7 +64,7 @@ public class Status {
     /**
      * Print files that are currently staged for removal.
      */
-    private static void printRemovedFiles() {
+    private static void printRemovedFiles(Stage stage) {
         System.out.println("=== Removed Files ===");
         if (!stage._deletions.isEmpty()) {
             Iterator iter = stage._deletions.entrySet().iterator();
@@ -76,79 +79,35 @@ public class Status {
     }
 
     /**
-     * Print files that have been modified.
+     * Print files that have been modified since they were committed or staged, and files that are not tracked.
+     * Note: files of next commit are compared with working directory in a single merge-join over sorted paths, so
+     * every file is visited once, and untracked files are never hashed.
      */
-    private static void printModifications() {
-        System.out.println("=== Modifications Not Staged For Commit ===");
-
-        // Get all files from current commmit
-        HashMap<String,String> currBlobList = Commit.getCurrentBlobs();
-
-        // Iterate through files from current commit
-        Iterator iter = currBlobList.entrySet().iterator();
-        for (Iterator it = iter; it.hasNext(); ) {
-            Map.Entry obj = (Map.Entry) it.next();
-            String fileName = (String) obj.getKey();
-            String committedFileHash = (String) obj.getValue();
-            String workingDirectoryFileHash = Utils.findByFileName(fileName);
-            // 1. Tracked in current commit, changed in current working directory, but not staged
-            if (workingDirectoryFileHash != null && !committedFileHash.equals(workingDirectoryFileHash) &&
-                !stage._additions.containsValue(workingDirectoryFileHash)) {
-                System.out.println(fileName + " (modified)");
-            }
-            // 2. tracked current commit, not staged for removal, deleted in CWD
-            if (workingDirectoryFileHash == null && !stage._deletions.containsKey(fileName)){
-                System.out.println(fileName + " (deleted)");
-            }
-        }
-        // Iterate through files stage for addition
-        iter = stage._additions.entrySet().iterator();
-        for (Iterator it = iter; it.hasNext(); ) {
-            Map.Entry obj = (Map.Entry) it.next();
-            String fileName = (String) obj.getKey();
-            String committedFileHash = (String) obj.getValue();
-            String workingDirectoryFileHash = Utils.findByFileName(fileName);
-            // 2. File staged, but different contents in current working directory
-            if (workingDirectoryFileHash != null && !workingDirectoryFileHash.equals(committedFileHash)) {
-                System.out.println(fileName + " (modified)");
-            }
-            // 3. File staged, but deleted in current working directory
-            if (workingDirectoryFileHash == null) {
-                System.out.println(fileName + " (deleted)");
+    private static void printWorkingChanges(Stage stage) {
+        ArrayList<String> modifications = new ArrayList<>();
+        ArrayList<String> untracked = new ArrayList<>();
+        HashMap<String, String> indexFiles = Diff.indexFiles(stage);
+        Diff.maps(indexFiles, Diff.workingFiles(stage, indexFiles, true), (path, oldID, newID) -> {
+            if (oldID == null) {
+                // Note: includes files staged for removal, but then created again
+                untracked.add(path);
+            } else if (newID == null) {
+                modifications.add(path + " (deleted)");
+            } else {
+                modifications.add(path + " (modified)");
             }
+        });
+
+        System.out.println("=== Modifications Not Staged For Commit ===");
+        for (String line : modifications) {
+            System.out.println(line);
         }
         System.out.println();
-    }
-
-    /**
-     * Print files in current working directory that are not tracked.
-     */
-    static void printUntracked() {
         System.out.print("=== Untracked Files ===");
-        ArrayList<String> filesToIgnore = Utils.IGNORE_FILES;
-        // Get all files from current commit
-        HashMap<String, String> trackedFiles = Commit.getCurrentBlobs();
-        // Note: iterating over user directory
-        for (File file : Main.USERDIR.listFiles()) {
-            String fileName = file.getName();
-            // Ignore files from files to ignore
-            if (filesToIgnore.contains(fileName) ||
-                file.isDirectory()) {
-                continue;
-            }
-            // Create temporary file to extract name and hash
-            Blob temp = new Blob(file);
-            // Check if file name exists in tracked files
-            if (trackedFiles.containsKey(temp._name)) {
-                continue;
-            }
-            // Check if file is already staged for addition
-            if (stage._additions.containsValue(temp._sha1)) {
-                continue;
-            }
+        for (String fileName : untracked) {
             System.out.println();
             System.out.print(fileName);
         }
         System.out.println();
     }
-}
\ No newline at end of file
+}
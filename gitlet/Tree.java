@@ -1,51 +1,231 @@
 package gitlet;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
 
-/* Class for Tree object. This object is saved with to-be-created Commit. */
+/* Class for Tree object. This object is saved with to-be-created Commit. Each tree holds the files of one directory
+ * and refers to one tree per subdirectory, so trees of unchanged directories are shared by every commit and two
+ * directories hold the same files exactly when their tree identifiers are equal. */
 public class Tree implements GitletObject, Serializable {
+    private static final long serialVersionUID = -4397044162741948473L; // Note: allows reading serialized trees
 
-    HashMap<String, String> _blobList;  // List of blobs that tree currently holds
+    HashMap<String, String> _blobList;  // Files in directory of tree {Name of file: SHA1 hash}
+    HashMap<String, String> _trees;     // Subdirectories {Name of directory: Tree identifier}
     String _sha1;                       // Tree identifier
+    transient ArrayList<Tree> _newTrees; // Subtrees created along with this tree, written before it
 
-    /** Constructor for general Tree objects */
+    /** Constructor for tree of next commit. Only trees along paths changed in stage are created again. */
     public Tree() {
-        _blobList = getBlobList();      // List of blobs that tree currently holds
-        _sha1 = createHash();           // Tree identifier
-    }
-
-    /** Get updated list of blobs that are staged for addition. Remove blobs that are staged for deletion. */
-    public HashMap<String, String> getBlobList() {
-        HashMap<String,String> blobList = Commit.getCurrentBlobs();
         // Note: Stage never null since created in initialization
         Stage stage = Stage.read();
-        blobList.putAll(stage._additions);
-        blobList.keySet().removeAll(stage._deletions.keySet());
-        return blobList;
+        HashMap<String, String> changes = new HashMap<>(stage._additions);
+        for (String name : stage._deletions.keySet()) {
+            changes.put(name, null);
+        }
+        Commit current = Commit.getCurrent();
+        Tree tree = update(read(current != null ? current._tree : null, Tree::read), changes, Tree::read);
+        _blobList = tree._blobList;
+        _trees = tree._trees;
+        _newTrees = tree._newTrees;
+        _sha1 = tree._sha1;
     }
 
-    /** Get list of blobs from given tree SHA1 */
+    /** Constructor for tree with given files and no subdirectories, without reading stage */
+    Tree(HashMap<String, String> blobList) {
+        this(blobList, new HashMap<>());
+    }
+
+    /** Constructor for tree with given files and subdirectories */
+    private Tree(HashMap<String, String> blobList, HashMap<String, String> trees) {
+        _blobList = blobList;
+        _trees = trees;
+        _newTrees = new ArrayList<>();
+        _sha1 = createHash();
+    }
+
+    /** Constructor for trees read from disk */
+    private Tree(String sha1, HashMap<String, String> blobList, HashMap<String, String> trees) {
+        _blobList = blobList;
+        _trees = trees;
+        _sha1 = sha1;
+    }
+
+    /** Get files of given tree SHA1 and its subdirectories {Path of file: SHA1 hash}. Paths of files in
+     *  subdirectories are separated by '/'. Note: returns new map since trees may be shared through object cache. */
     public static HashMap<String,String> getBlobs(String treeID) {
-        File file = Utils.createFilePath(treeID, Main.TREE);
-        if (file != null) {
-            Tree tree = Utils.readObject(file, Tree.class);
-            return tree._blobList;
+        HashMap<String, String> blobs = new HashMap<>();
+        Tree tree = ObjectStore.readObject(treeID, Main.TREE, Tree::decode);
+        if (tree != null) {
+            addBlobs("", tree, Tree::read, blobs);
         }
-        return new HashMap<>();
+        return blobs;
+    }
+
+    /** Get files of given tree and its subdirectories read with given reader, by path from given prefix */
+    static void addBlobs(String prefix, Tree tree, Function<String, Tree> reader, Map<String, String> blobs) {
+        for (Map.Entry<String, String> entry : tree._blobList.entrySet()) {
+            blobs.put(prefix + entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, String> entry : tree._trees.entrySet()) {
+            addBlobs(prefix + entry.getKey() + "/", read(entry.getValue(), reader), reader, blobs);
+        }
+    }
+
+    /** Get blob of file with given path in given tree, or null if tree has no such file */
+    static String getBlob(String treeID, String path) {
+        Tree tree = read(treeID, Tree::read);
+        int slash = path.indexOf('/');
+        while (slash >= 0 && tree._trees.containsKey(path.substring(0, slash))) {
+            tree = read(tree._trees.get(path.substring(0, slash)), Tree::read);
+            path = path.substring(slash + 1);
+            slash = path.indexOf('/');
+        }
+        return slash < 0 ? tree._blobList.get(path) : null;
+    }
+
+    /** Get identifier of file or subdirectory tree with given path in given tree, or null if tree has no such path */
+    static String getEntry(String treeID, String path) {
+        Tree tree = read(treeID, Tree::read);
+        String[] names = path.split("/");
+        for (int i = 0; i < names.length - 1; i++) {
+            String id = tree._trees.get(names[i]);
+            if (id == null) {
+                return null;
+            }
+            tree = read(id, Tree::read);
+        }
+        String name = names[names.length - 1];
+        return tree._blobList.containsKey(name) ? tree._blobList.get(name) : tree._trees.get(name);
+    }
+
+    /**
+     * Get files changed between two trees {Path of file: SHA1 hash in new tree, or null if file was removed}.
+     * Subdirectories with same tree identifier in both trees are skipped without being read, so only trees along
+     * changed paths are read. A null tree identifier stands for a tree with no files.
+     */
+    static TreeMap<String, String> changes(String oldID, String newID) {
+        return changes(oldID, newID, Tree::read);
     }
 
-    /** Write Tree object to disk */
+    /** Get files changed between two trees, reading trees with given reader */
+    static TreeMap<String, String> changes(String oldID, String newID, Function<String, Tree> reader) {
+        TreeMap<String, String> changes = new TreeMap<>();
+        Diff.trees(oldID, newID, reader, (path, oldBlob, newBlob) -> changes.put(path, newBlob));
+        return changes;
+    }
+
+    /**
+     * Create tree from given tree with given changes {Path of file: SHA1 hash, or null to remove file or directory}.
+     * Only trees of directories containing a changed path are created again, and these are listed in _newTrees of
+     * returned tree. Directories left without files are removed. Given tree is not changed.
+     */
+    static Tree update(Tree tree, Map<String, String> changes, Function<String, Tree> reader) {
+        HashMap<String, String> blobList = new HashMap<>(tree._blobList);
+        HashMap<String, String> trees = new HashMap<>(tree._trees);
+        TreeMap<String, HashMap<String, String>> subChanges = new TreeMap<>();  // {Directory: Changes inside}
+        for (Map.Entry<String, String> entry : changes.entrySet()) {
+            String path = entry.getKey();
+            int slash = path.indexOf('/');
+            if (slash >= 0) {
+                subChanges.computeIfAbsent(path.substring(0, slash), name -> new HashMap<>())
+                        .put(path.substring(slash + 1), entry.getValue());
+            } else if (entry.getValue() != null) {
+                blobList.put(path, entry.getValue());
+            } else {
+                blobList.remove(path);
+                trees.remove(path);
+            }
+        }
+
+        // Note: subdirectories are updated after removals, so a removed directory is created again from no files
+        ArrayList<Tree> newTrees = new ArrayList<>();
+        for (Map.Entry<String, HashMap<String, String>> entry : subChanges.entrySet()) {
+            String name = entry.getKey();
+            Tree subtree = update(read(trees.get(name), reader), entry.getValue(), reader);
+            if (subtree._blobList.isEmpty() && subtree._trees.isEmpty()) {
+                trees.remove(name);
+            } else if (!subtree._sha1.equals(trees.get(name))) {
+                trees.put(name, subtree._sha1);
+                newTrees.addAll(subtree._newTrees);
+                newTrees.add(subtree);
+            }
+        }
+        Tree updated = new Tree(blobList, trees);
+        updated._newTrees = newTrees;
+        return updated;
+    }
+
+    /** Read tree with given identifier from object store. Returns null if tree does not exist. */
+    static Tree read(String id) {
+        return ObjectStore.readObject(id, Main.TREE, Tree::decode);
+    }
+
+    /** Read tree with given identifier using given reader. Returns tree with no files for null identifier. */
+    static Tree read(String id, Function<String, Tree> reader) {
+        Tree tree = id != null ? reader.apply(id) : null;
+        if (tree == null && id != null) {
+            throw Utils.error("Missing tree: %s", id);
+        }
+        return tree != null ? tree : new Tree(new HashMap<>());
+    }
+
+    /** Write Tree object to disk, along with subtrees created with it */
     public void write() throws IOException {
-        writeToDisk(_sha1, this, Main.TREE);
+        if (_newTrees != null) {
+            for (Tree tree : _newTrees) {
+                writeToDisk(tree._sha1, tree.encode(), Main.TREE);
+            }
+        }
+        writeToDisk(_sha1, encode(), Main.TREE);
+    }
+
+    /** Encode tree in binary format as sorted file entries, followed by sorted subdirectory entries */
+    public byte[] encode() {
+        Codec.Encoder out = new Codec.Encoder(Codec.TREE);
+        out.writeEntries(_blobList);
+        out.writeEntries(_trees);
+        return out.toByteArray();
     }
 
-    /** Create Tree identifier */
+    /** Decode tree with given identifier. Serialized trees written by older versions are also read. */
+    static Tree decode(String id, byte[] contents) {
+        if (Codec.isSerialized(contents)) {
+            Tree tree = Utils.deserialize(contents, Tree.class);
+            tree._trees = new HashMap<>();
+            return tree;
+        }
+        // Note: subdirectories were added in format version 4
+        return Codec.decode(contents, Codec.TREE,
+            in -> new Tree(id, in.readEntries(), in._version >= 4 ? in.readEntries() : new HashMap<>()));
+    }
+
+    /**
+     * Create Tree identifier from its entries only. Entries are hashed in sorted order as
+     * "tree [count]" 0, then [name] 0 [20-byte id] per entry, where names of subdirectories end with '/', so trees
+     * with same files share one identifier on every branch, and two trees hold the same files exactly when their
+     * identifiers are equal.
+     */
     public String createHash() {
-        String branchName = Branch.getCurrentName();
-        return Utils.sha1(_blobList.toString(), branchName);
+        TreeMap<String, String> entries = new TreeMap<>(_blobList);
+        for (Map.Entry<String, String> entry : _trees.entrySet()) {
+            entries.put(entry.getKey() + "/", entry.getValue());
+        }
+        MessageDigest md = Pack.digest();
+        md.update(("tree " + entries.size()).getBytes(StandardCharsets.UTF_8));
+        md.update((byte) 0);
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            md.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(Utils.toBytes(entry.getValue()));
+        }
+        return Utils.toHex(md.digest());
     }
 }
 
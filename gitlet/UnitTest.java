@@ -3,19 +3,24 @@ package gitlet;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.TreeSet;
 
 import static org.junit.Assert.*;
 
 
-// Test basic gitlet commands with shallow depth [32 Tests Total]
-// Tests include: init, add, commit, remove, log, global-log, find, status, checkout, branch, rm-branch, merge
+// Test basic gitlet commands with shallow depth [61 Tests Total]
+// Tests include: init, add, commit, remove, log, global-log, find, status, checkout, branch, rm-branch, merge, repack, object cache, commit-graph, rev-walk, stat cache, daemon, batch, fast-import, fast-export, tree hash, subdirectory trees, path log, diff, line diff, line merge
 public class UnitTest {
 
     // Clear current working directory and initialize .gitlet repo
@@ -96,6 +101,71 @@ public class UnitTest {
         assertTrue(stage._additions.containsKey("cube.txt"));
     }
 
+    // Test files with identical contents but different names share one blob
+    @Test
+    public void addIdenticalContentsTest() throws IOException {
+
+        Utils.sameChangeFileContents("cube.txt");
+        Utils.sameChangeFileContents("sphere.txt");
+        Main.main("add", "cube.txt");
+        Main.main("add", "sphere.txt");
+
+        Stage stage = Stage.read();
+        assertEquals(stage._additions.get("cube.txt"), stage._additions.get("sphere.txt"));
+        assertEquals(1, ObjectStore.list(Main.BLOB).size());
+    }
+
+    // Test added file is stored compressed and decompressed to original contents
+    @Test
+    public void addCompressedTest() throws IOException {
+
+        String contents = "This is the same line.\n".repeat(1000);
+        Utils.writeContents(Utils.join(Main.USERDIR, "cube.txt"), contents);
+        Main.main("add", "cube.txt");
+
+        // Check stored blob is smaller than file
+        String sha1 = Stage.read()._additions.get("cube.txt");
+        assertTrue(ObjectStore.read(sha1, Main.BLOB).length < contents.length());
+
+        // Check blob stream returns original contents
+        try (InputStream blob = Blob.openStream(sha1)) {
+            assertEquals(contents, new String(blob.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+
+    // Test adding several paths, globs and whole working directory in one command
+    @Test
+    public void addManyTest() throws IOException {
+
+        // Create files, two with identical contents
+        Utils.writeContents(Utils.join(Main.USERDIR, "cup.txt"), "same");
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "same");
+        Utils.writeContents(Utils.join(Main.USERDIR, "notes.md"), "notes");
+        Utils.writeContents(Utils.join(Main.USERDIR, "dog.java"), "dog");
+
+        // Check nothing staged if any path matches no file
+        Main.main("add", "cup.txt", "missing.txt");
+        assertTrue(Stage.read().isAdditionsEmpty());
+
+        // Check glob and file name staged together, with identical contents stored once
+        Main.main("add", "*.txt", "notes.md");
+        Stage stage = Stage.read();
+        assertEquals(3, stage._additions.size());
+        assertEquals(stage._additions.get("cup.txt"), stage._additions.get("wug.txt"));
+        assertEquals(2, ObjectStore.list(Main.BLOB).size());
+
+        // Check every file staged with "."
+        Main.main("add", ".");
+        assertTrue(Stage.read()._additions.containsKey("dog.java"));
+        assertEquals(4, Stage.read()._additions.size());
+
+        // Check existing file with glob characters in its name is added by name
+        Utils.writeContents(Utils.join(Main.USERDIR, "a[1].txt"), "a");
+        Main.main("add", "a[1].txt");
+        assertTrue(Stage.read()._additions.containsKey("a[1].txt"));
+        assertEquals(5, Stage.read()._additions.size());
+    }
 
     // ----- COMMIT TESTS -----
 
@@ -164,7 +234,7 @@ public class UnitTest {
         assertEquals(currentCommit._sha1, Commit.getCurrentID());
 
         // Check valid parent commit of new commit
-        assertEquals(currentCommit._parentSha1, firstCommit._sha1);
+        assertEquals(currentCommit.getParent(), firstCommit._sha1);
 
         // Check commit metadata is correct
         assertEquals("added not wug.txt", currentCommit._logMessage);
@@ -216,6 +286,63 @@ public class UnitTest {
         assertEquals("Please enter a commit message.", output.toString());
     }
 
+    // Test commit and tree are stored in binary format and read back unchanged
+    @Test
+    public void commitEncodingTest() throws IOException {
+
+        Utils.createEmptyFile("wug.txt");
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added wug.txt");
+        Commit commit = Commit.getCurrent();
+
+        // Check stored contents begin with type and version instead of Java serialization header
+        byte[] contents = ObjectStore.read(commit._sha1, Main.COMMITS);
+        assertFalse(Codec.isSerialized(contents));
+        assertEquals(Codec.COMMIT, contents[0]);
+        assertEquals(Codec.VERSION, contents[1]);
+
+        // Check decoded commit and tree fields
+        Commit decoded = Commit.decode(commit._sha1, contents);
+        assertEquals(commit._parents, decoded._parents);
+        assertEquals(commit._tree, decoded._tree);
+        assertEquals("added wug.txt", decoded._logMessage);
+        assertEquals(commit._time, decoded._time);
+        assertFalse(decoded.isMerge());
+        assertEquals(Commit.getCurrentBlobs(), Tree.decode(commit._tree, ObjectStore.read(commit._tree, Main.TREE))._blobList);
+    }
+
+    /** Commits written with abbreviated merge identifiers are read with full parent identifiers */
+    @Test
+    public void commitUpgradeTest() throws IOException {
+
+        // Create commit on new branch
+        Main.main("branch", "serf");
+        Main.main("checkout", "serf");
+        Utils.createEmptyFile("wug.txt");
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added wug.txt");
+        Commit merged = Commit.getCurrent();
+
+        // Encode merge commit in format version 1
+        Codec.Encoder out = new Codec.Encoder(Codec.COMMIT);
+        out.writeByte(Commit.HAS_PARENT | Commit.HAS_TREE | Commit.HAS_MERGE);
+        out.writeID(Commit.zeroSha1);
+        out.writeID(merged._tree);
+        out.writeString(Commit.zeroSha1.substring(0, 7) + " " + merged._sha1.substring(0, 7));
+        out.writeString(merged._time);
+        out.writeString("Merged serf into master.");
+        byte[] contents = out.toByteArray();
+        contents[1] = 1;
+
+        // Check abbreviated merge identifier upgraded to full identifier
+        Commit commit = Commit.decode("1234567890123456789012345678901234567890", contents);
+        assertTrue(commit.isMerge());
+        assertEquals(Commit.zeroSha1, commit.getParent());
+        assertEquals(merged._sha1, commit._parents.get(1));
+        assertEquals(merged._tree, commit._tree);
+        assertEquals(Codec.VERSION, commit.encode()[1]);
+    }
+
     // ----- REMOVE TESTS -----
 
     // Test successfully removing committed file from current commit
@@ -258,6 +385,47 @@ public class UnitTest {
         Main.main("log");
     }
 
+    /** Log for a path only shows commits that changed the file or directory, using changed-path filters */
+    @Test
+    public void pathLogTest() throws IOException {
+        Utils.join(Main.USERDIR, "docs").mkdirs();
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "wug");
+        Utils.writeContents(Utils.join(Main.USERDIR, "docs", "dog.txt"), "dog");
+        Main.main("add", ".");
+        Main.main("commit", "added wug and dog");
+        Utils.writeContents(Utils.join(Main.USERDIR, "cup.txt"), "cup");
+        Main.main("add", "cup.txt");
+        Main.main("commit", "added cup");
+        String cupCommit = Commit.getCurrentID();
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "wug2");
+        Main.main("add", "wug.txt");
+        Main.main("commit", "changed wug");
+
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out, true));
+        try {
+            Main.main("log", "--", "wug.txt");
+            Main.main("log", "--", "docs/");
+        } finally {
+            System.setOut(stdout);
+        }
+        // Note: output of second command follows output of first command directly
+        Commit first = Commit.getByID(Commit.getByID(cupCommit).getParent());
+        Commit last = Commit.getCurrent();
+        String firstEntry = "===\ncommit " + first._sha1 + "\n" + first._time + "\n" + first._logMessage;
+        String lastEntry = "===\ncommit " + last._sha1 + "\n" + last._time + "\n" + last._logMessage;
+        assertEquals(lastEntry + "\n\n" + firstEntry + firstEntry, out.toString(StandardCharsets.UTF_8));
+
+        // Check filter of commit holds changed file and its directories
+        CommitGraph graph = CommitGraph.get();
+        ChangedPaths filters = ChangedPaths.get(graph);
+        int row = graph.row(first._sha1);
+        assertTrue(filters.mightChange(row, "docs"));
+        assertTrue(filters.mightChange(row, "docs/dog.txt"));
+        assertTrue(Main.CHANGED_PATHS.isFile());
+    }
+
     // ----- GLOBAL LOG TESTS -----
 
     // Test global log runs successfully
@@ -287,6 +455,35 @@ public class UnitTest {
         assertEquals(Commit.getCurrentID(), output.toString());
     }
 
+    // Test find reads message index, which is rebuilt when missing
+    @Test
+    public void findIndexTest() throws IOException {
+
+        // Create two commits with same message
+        Utils.createEmptyFile("wug.txt");
+        Main.main("add", "wug.txt");
+        Main.main("commit", "same message");
+        String first = Commit.getCurrentID();
+        Utils.createEmptyFile("cup.txt");
+        Main.main("add", "cup.txt");
+        Main.main("commit", "same message");
+        String second = Commit.getCurrentID();
+
+        // Check both commits recorded and other messages not matched
+        assertEquals(new TreeSet<>(Arrays.asList(first, second)), MessageIndex.find("same message"));
+        assertTrue(MessageIndex.find("same messag").isEmpty());
+
+        // Check missing index rebuilt from commits
+        Main.main("reindex");
+        for (File bucket : Main.MESSAGES.listFiles()) {
+            bucket.delete();
+        }
+        Main.MESSAGES.delete();
+        assertFalse(Main.MESSAGES.exists());
+        assertEquals(2, MessageIndex.find("same message").size());
+        assertEquals(1, MessageIndex.find("initial commit").size());
+    }
+
     // ----- STATUS TESTS -----
 
     // Test status of branches and files with different stagings
@@ -395,6 +592,25 @@ public class UnitTest {
         Main.main("checkout", "--", "wug.txt");
     }
 
+    // Test checkout restores binary file contents unchanged
+    @Test
+    public void checkoutBinaryTest() throws IOException {
+
+        // Create and commit file with bytes that are not valid UTF-8
+        byte[] contents = new byte[3 * Blob.CHUNK_SIZE];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = (byte) (i * 31);
+        }
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.bin"), (Object) contents);
+        Main.main("add", "wug.bin");
+        Main.main("commit", "added binary");
+
+        // Check checked out file is identical to original file
+        Main.main("rm", "wug.bin");
+        Main.main("checkout", "--", "wug.bin");
+        assertArrayEquals(contents, Utils.readContents(Utils.join(Main.USERDIR, "wug.bin")));
+    }
+
     // Test checkout failure cases of checkout to commit that DNE, and checkout file that DNE
     @Test
     public void checkoutTest2() throws IOException {
@@ -517,6 +733,106 @@ public class UnitTest {
                 "delete it, or add and commit it first.", output.toString());
     }
 
+    // Test checkout only rewrites files that differ between branches
+    @Test
+    public void checkoutIncrementalTest() throws IOException {
+
+        // Commit two files last modified in the past
+        File cup = Utils.join(Main.USERDIR, "cup.txt");
+        File wug = Utils.join(Main.USERDIR, "wug.txt");
+        Utils.writeContents(cup, "cup");
+        Utils.writeContents(wug, "wug");
+        long past = System.currentTimeMillis() - 10000;
+        cup.setLastModified(past);
+        wug.setLastModified(past);
+        Main.main("add", "cup.txt");
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added cup and wug");
+
+        // Check switching to branch at same commit leaves files untouched
+        Main.main("branch", "serf");
+        Main.main("checkout", "serf");
+        assertEquals(past, cup.lastModified());
+        assertEquals(past, wug.lastModified());
+
+        // Change one file in new branch and switch back
+        Utils.writeContents(wug, "wug changed");
+        Main.main("add", "wug.txt");
+        Main.main("commit", "changed wug");
+        Main.main("checkout", "master");
+
+        // Check only changed file rewritten
+        assertEquals(past, cup.lastModified());
+        assertEquals("wug", Utils.readContentsAsString(wug));
+    }
+
+    // Test checkout writes files in parallel and reports first failing file in name order
+    @Test
+    public void checkoutParallelTest() throws IOException {
+
+        // Use several checkout threads
+        Utils.writeContents(Main.CONFIG, Config.CHECKOUT_THREADS + "=4\n");
+        Config.reload();
+
+        // Commit many files in new branch, and remove them in master branch
+        Main.main("branch", "serf");
+        Main.main("checkout", "serf");
+        for (int i = 0; i < 20; i++) {
+            Utils.writeContents(Utils.join(Main.USERDIR, "file" + (char) ('a' + i) + ".txt"), "contents " + i);
+            Main.main("add", "file" + (char) ('a' + i) + ".txt");
+        }
+        Main.main("commit", "added files");
+        Main.main("checkout", "master");
+        assertFalse(Utils.existsInCWD("filea.txt"));
+
+        // Check every file written
+        Main.main("checkout", "serf");
+        for (int i = 0; i < 20; i++) {
+            File file = Utils.join(Main.USERDIR, "file" + (char) ('a' + i) + ".txt");
+            assertEquals("contents " + i, Utils.readContentsAsString(file));
+        }
+
+        // Check error reported for first file that cannot be written
+        Main.main("checkout", "master");
+        Utils.join(Main.USERDIR, "filec.txt", "inner").mkdirs();
+        Utils.join(Main.USERDIR, "fileq.txt", "inner").mkdirs();
+        try {
+            Main.main("checkout", "serf");
+            fail();
+        } catch (IOException excp) {
+            assertTrue(excp.getMessage().endsWith("filec.txt"));
+        } finally {
+            Utils.deleteDirectory(Utils.join(Main.USERDIR, "filec.txt"));
+            Utils.deleteDirectory(Utils.join(Main.USERDIR, "fileq.txt"));
+            Utils.join(Main.USERDIR, "filec.txt").delete();
+            Utils.join(Main.USERDIR, "fileq.txt").delete();
+            Config.reload();
+        }
+    }
+
+    // Test untracked files found from HEAD tree and index by name
+    @Test
+    public void untrackedFilesTest() throws IOException {
+
+        // Commit file, then remove it in next commit
+        Utils.createEmptyFile("wug.txt");
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added wug");
+        Main.main("rm", "wug.txt");
+        Main.main("commit", "removed wug");
+
+        // Check file tracked in older commit is untracked once recreated
+        Utils.createEmptyFile("wug.txt");
+        assertEquals(Collections.singletonList("wug.txt"), Utils.getUntrackedFiles());
+
+        // Check staged and modified tracked files are not untracked
+        Main.main("add", "wug.txt");
+        assertFalse(Utils.checkUntrackedCwd());
+        Main.main("commit", "added wug again");
+        Utils.randomChangeFileContents("wug.txt");
+        assertFalse(Utils.checkUntrackedCwd());
+    }
+
     // ----- BRANCH TESTS -----
 
     // Test creating and checkout out new branch, and failure when creating branch with duplicate name
@@ -778,7 +1094,7 @@ public class UnitTest {
 
         // Check no merge commit created
         Commit fastCommit = Commit.getCurrent();
-        assertTrue(fastCommit._mergedId == null);
+        assertFalse(fastCommit.isMerge());
         assertEquals(fastCommit._sha1, commit3._sha1);
 
         // Check new branch commits unchanged
@@ -1051,8 +1367,8 @@ public class UnitTest {
 
         // Checkout merge commit is HEAD commit of master and serf branch
         Commit currentCommit = Commit.getCurrent();
-        assertEquals(currentCommit._mergedId.substring(0,7), commit3._sha1.substring(0,7));
-        assertEquals(currentCommit._mergedId.substring(8,15), commit2._sha1.substring(0,7));
+        assertEquals(currentCommit._parents.get(0), commit3._sha1);
+        assertEquals(currentCommit._parents.get(1), commit2._sha1);
 
         // Check split-point is first commit
         String splitPoint = Merge.splitPoint(commit3, commit2);
@@ -1103,8 +1419,8 @@ public class UnitTest {
 
         // Check merge commit SHA1 is composed of master branch and branch branch SHA1's
         Commit currentCommit = Commit.getCurrent();
-        assertEquals(currentCommit._mergedId.substring(0,7), commit2._sha1.substring(0,7));
-        assertEquals(currentCommit._mergedId.substring(8,15), commit1._sha1.substring(0,7));
+        assertEquals(currentCommit._parents.get(0), commit2._sha1);
+        assertEquals(currentCommit._parents.get(1), commit1._sha1);
 
         // Checkout master
         Main.main("checkout", "master");
@@ -1120,8 +1436,8 @@ public class UnitTest {
 
         // Check merge commit SHA1 is composed of master branch and temp branch SHA1's
         currentCommit = Commit.getCurrent();
-        assertEquals(currentCommit._mergedId.substring(0,7), commit3._sha1.substring(0,7));
-        assertEquals(currentCommit._mergedId.substring(8,15), commit2._sha1.substring(0,7));
+        assertEquals(currentCommit._parents.get(0), commit3._sha1);
+        assertEquals(currentCommit._parents.get(1), commit2._sha1);
 
         // Checkout branch branch
         Main.main("checkout", "branch");
@@ -1158,6 +1474,613 @@ public class UnitTest {
         assertEquals(splitPoint, branchCommitArray.get(1));
     }
 
+    // ----- REPACK TESTS -----
+
+    // Test repack moves loose objects into pack and objects are still readable
+    @Test
+    public void repackTest() throws IOException {
+
+        // Create and commit new file
+        Utils.createEmptyFile("cup.txt");
+        Main.main("add", "cup.txt");
+        Main.main("commit", "added cup");
+        Commit commit = Commit.getCurrent();
+
+        // Check loose objects folded into single verified pack
+        Main.main("repack");
+        assertTrue(ObjectStore.listLoose(Main.COMMITS).isEmpty());
+        assertTrue(ObjectStore.listLoose(Main.BLOB).isEmpty());
+        assertEquals(1, Pack.packs().size());
+        assertTrue(Pack.packs().get(0).verify());
+
+        // Check commits (including short hash), trees and blobs read from pack
+        assertEquals(commit._sha1, Commit.getByID(commit._sha1.substring(0, 6))._sha1);
+        assertTrue(Tree.getBlobs(commit._tree).containsKey("cup.txt"));
+        assertEquals(2, ObjectStore.list(Main.COMMITS).size());
+        Main.main("rm", "cup.txt");
+        Main.main("checkout", "--", "cup.txt");
+        assertTrue(Utils.existsInCWD("cup.txt"));
+    }
+
+    // ----- OBJECT CACHE TESTS -----
+
+    /** Objects are decoded once, and cached trees are not changed by callers */
+    @Test
+    public void objectCacheTest() throws IOException {
+
+        // Create and commit new file
+        Utils.createEmptyFile("cup.txt");
+        Main.main("add", "cup.txt");
+        Main.main("commit", "added cup");
+        ObjectCache.clear();
+
+        // Check repeated lookups answered by cache
+        Commit commit = Commit.getCurrent();
+        assertSame(commit, Commit.getByID(commit._sha1));
+        assertSame(commit, Commit.getByID(commit._sha1.substring(0, 6)));
+        assertEquals(2, ObjectCache._hits);
+
+        // Check tree copies returned to callers
+        Tree.getBlobs(commit._tree).remove("cup.txt");
+        assertTrue(Tree.getBlobs(commit._tree).containsKey("cup.txt"));
+    }
+
+    // ----- COMMIT-GRAPH TESTS -----
+
+    /** Ancestry queries answered from commit-graph file, including after it is read again from disk */
+    @Test
+    public void commitGraphTest() throws IOException {
+
+        // Create commit on master and on new branch
+        Utils.createEmptyFile("cup.txt");
+        Main.main("add", "cup.txt");
+        Main.main("commit", "added cup");
+        String first = Commit.getCurrentID();
+        Main.main("branch", "serf");
+        Utils.createEmptyFile("dog.txt");
+        Main.main("add", "dog.txt");
+        Main.main("commit", "added dog");
+        String second = Commit.getCurrentID();
+
+        // Check ancestry and generation numbers
+        assertTrue(CommitGraph.isAncestor(first, second));
+        assertFalse(CommitGraph.isAncestor(second, first));
+        assertEquals(3, CommitGraph.get()._generations[CommitGraph.get().row(second)]);
+        assertEquals(first, CommitGraph.splitPoint(second, Branch.read("serf")));
+
+        // Check rows saved with fixed width and read again
+        assertEquals(Pack.HEADER_SIZE + 3 * CommitGraph.ROW_SIZE, Main.COMMIT_GRAPH.length());
+        CommitGraph.reload();
+        assertTrue(CommitGraph.isAncestor(Commit.zeroSha1, second));
+        assertEquals(3, CommitGraph.get()._count);
+    }
+
+    /** History walked once per commit in topological and first-parent order */
+    @Test
+    public void revWalkTest() throws IOException {
+
+        // Create commits on two branches and merge them
+        Main.main("branch", "serf");
+        Utils.createEmptyFile("cup.txt");
+        Main.main("add", "cup.txt");
+        Main.main("commit", "added cup");
+        String first = Commit.getCurrentID();
+        Main.main("checkout", "serf");
+        Utils.createEmptyFile("dog.txt");
+        Main.main("add", "dog.txt");
+        Main.main("commit", "added dog");
+        String second = Commit.getCurrentID();
+        Main.main("merge", "master");
+        String merge = Commit.getCurrentID();
+
+        // Check children returned before parents and shared initial commit returned once
+        ArrayList<String> topo = new ArrayList<>();
+        new RevWalk(RevWalk.Order.TOPO).start(merge).forEachRemaining(commit -> topo.add(commit._sha1));
+        assertEquals(4, topo.size());
+        assertEquals(merge, topo.get(0));
+        assertTrue(topo.containsAll(Arrays.asList(first, second)));
+        assertEquals(Commit.zeroSha1, topo.get(3));
+
+        // Check first-parent walk skips merged-in branch
+        ArrayList<String> firstParent = Utils.getCommitArray(Commit.getCurrent(), new ArrayList<>());
+        assertEquals(Arrays.asList(merge, second, Commit.zeroSha1), firstParent);
+    }
+
+    // ----- STAT CACHE TESTS -----
+
+    /** Files with unchanged stat data are not hashed again, and racy stat data is not trusted */
+    @Test
+    public void statCacheTest() throws IOException {
+
+        // Add file last modified before index is written
+        File wug = Utils.join(Main.USERDIR, "wug.txt");
+        Utils.writeContents(wug, "abc");
+        long past = System.currentTimeMillis() - 10000;
+        wug.setLastModified(past);
+        Main.main("add", "wug.txt");
+        Stage stage = Stage.read();
+        assertEquals(stage._additions.get("wug.txt"), stage._stats.get("wug.txt")._sha1);
+        assertEquals(stage._additions.get("wug.txt"), stage.hashFile("wug.txt"));
+        assertFalse(stage._isStatsChanged);
+
+        // Check file with different size is hashed again
+        Utils.writeContents(wug, "abcd");
+        wug.setLastModified(past);
+        assertNotEquals(stage._additions.get("wug.txt"), stage.hashFile("wug.txt"));
+        assertTrue(stage._isStatsChanged);
+
+        // Check stat data of file modified after index is written is cleared
+        File cup = Utils.join(Main.USERDIR, "cup.txt");
+        Utils.writeContents(cup, "cup");
+        cup.setLastModified(System.currentTimeMillis() + 10000);
+        Main.main("add", "cup.txt");
+        assertEquals(0, Stage.read()._stats.get("cup.txt")._mtime);
+        assertEquals(Stage.read()._additions.get("cup.txt"), Stage.read().hashFile("cup.txt"));
+    }
+
+    // ----- DAEMON TESTS -----
+
+    /** Commands sent to daemon run in daemon process and their output is returned to client */
+    @Test
+    public void daemonTest() throws Exception {
+        Thread daemon = new Thread(() -> {
+            try {
+                Daemon.serve();
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        });
+        daemon.start();
+        while (!Daemon.isRunning()) {
+            Thread.sleep(10);
+        }
+
+        // Check commands sent to daemon change repository
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "wug");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertEquals(0, Daemon.send(new String[]{"add", "wug.txt"}, out, err));
+        assertEquals(0, Daemon.send(new String[]{"commit", "added wug"}, out, err));
+        assertEquals("added wug", Commit.getCurrent()._logMessage);
+        assertEquals(0, out.size());
+
+        // Check output and errors are returned to client
+        Daemon.send(new String[]{"rm", "cup.txt"}, out, err);
+        assertEquals("No reason to remove the file.", out.toString(StandardCharsets.UTF_8));
+        assertEquals(0, err.size());
+
+        // Check daemon sees commit made by another process
+        Main.main("rm", "wug.txt");
+        Main.main("commit", "removed wug");
+        out.reset();
+        Daemon.send(new String[]{"log"}, out, err);
+        assertTrue(out.toString(StandardCharsets.UTF_8).startsWith("===\ncommit " + Commit.getCurrentID()));
+
+        // Stop daemon
+        Main.main("daemon", "stop");
+        daemon.join();
+        assertFalse(Daemon.SOCKET.exists());
+    }
+
+    // ----- BATCH TESTS -----
+
+    /** Command lines are split at whitespace outside quotes */
+    @Test
+    public void batchTokenizeTest() {
+        assertArrayEquals(new String[]{"commit", "two words"}, Batch.tokenize("  commit \"two words\" "));
+        assertArrayEquals(new String[]{"find", "it's \"here\""}, Batch.tokenize("find \"it's \\\"here\\\"\""));
+        assertArrayEquals(new String[]{"a b", ""}, Batch.tokenize("'a b' ''"));
+        assertArrayEquals(new String[]{"add", "a b.txt"}, Batch.tokenize("add a\\ b.txt"));
+        assertArrayEquals(new String[0], Batch.tokenize("   "));
+    }
+
+    /** Commands of batch share stage, which is written to disk once batch ends */
+    @Test
+    public void batchTest() throws IOException {
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "wug");
+        Utils.writeContents(Utils.join(Main.USERDIR, "cup.txt"), "cup");
+        String script = "# add files\nadd wug.txt\nadd cup.txt\ncommit \"added wug and cup\"\n\nrm cup.txt\n"
+                + "rm notes.txt\nstatus\n";
+        InputStream stdin = System.in;
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setIn(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)));
+        System.setOut(new PrintStream(out, true));
+        try {
+            Main.main("batch");
+        } finally {
+            System.setIn(stdin);
+            System.setOut(stdout);
+        }
+
+        // Check commit and stage written by batch
+        assertEquals("added wug and cup", Commit.getCurrent()._logMessage);
+        assertEquals(2, Commit.getCurrentBlobs().size());
+        Stage stage = Stage.read();
+        assertTrue(stage._deletions.containsKey("cup.txt"));
+        assertTrue(stage._additions.isEmpty());
+
+        // Check output of each command ends with new line
+        String output = out.toString(StandardCharsets.UTF_8);
+        assertTrue(output.startsWith("No reason to remove the file.\n=== Branches ===\n"));
+        assertTrue(output.contains("=== Removed Files ===\ncup.txt\n"));
+
+        // Check shared stage cleared by commit keeps index time, so saved stat data is still used
+        Stage.share();
+        try {
+            long indexTime = Stage.read()._indexTime;
+            assertNotEquals(0, indexTime);
+            Stage.clear();
+            assertEquals(indexTime, Stage.read()._indexTime);
+            assertEquals(stage._stats.keySet(), Stage.read()._stats.keySet());
+        } finally {
+            Stage.flush();
+        }
+    }
+
+    // ----- FAST-IMPORT TESTS -----
+
+    /** Imported blobs and commits are written into a single pack and branches point to imported commits */
+    @Test
+    public void fastImportTest() throws IOException {
+        String stream = "blob\nmark :1\ndata 4\nwug\n\n"
+                + "blob\nmark :2\ndata 3\ncup\n"
+                + "commit master\nmark :3\ntime 1600000000 -0700\ndata 9\nadded wug\nM :1 wug.txt\n\n"
+                + "commit other\nmark :4\ndata 9\nadded cup\nfrom :3\nM :2 cup.txt\nD wug.txt\n\n"
+                + "commit master\ndata 12\nmerged other\nmerge :4\nM :2 cup.txt\n"
+                + "done\n";
+        new FastImport(new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8))).run();
+
+        // Check objects are packed, not written as loose files
+        assertEquals(1, Main.PACK.list((dir, name) -> name.endsWith(".pack")).length);
+        assertTrue(ObjectStore.listLoose(Main.BLOB).isEmpty());
+
+        // Check history of imported branches
+        Commit merge = Commit.getCurrent();
+        assertEquals("merged other", merge._logMessage);
+        assertTrue(merge.isMerge());
+        Commit added = Commit.getByID(merge.getParent());
+        assertEquals("added wug", added._logMessage);
+        assertEquals("Date: Sun Sep 13 05:26:40 2020 -0700", added._time);
+        assertEquals(Commit.zeroSha1, added.getParent());
+        assertEquals(merge._parents.get(1), Branch.read("other"));
+        assertEquals(2, Commit.getCurrentBlobs().size());
+        assertEquals(Collections.singleton("cup.txt"), Tree.getBlobs(Commit.getByID(Branch.read("other"))._tree).keySet());
+        assertEquals(new TreeSet<>(Collections.singleton(added._sha1)), MessageIndex.find("added wug"));
+
+        // Check imported files can be checked out
+        Main.main("checkout", "--", "wug.txt");
+        assertEquals("wug\n", Utils.readContentsAsString(Utils.join(Main.USERDIR, "wug.txt")));
+    }
+
+    /** Commits with same message, time and tree on same branch are kept as distinct commits of their parents */
+    @Test
+    public void fastImportSameCommitsTest() throws IOException {
+        String commit = "commit master\ntime 1600000000 +0000\ndata 6\nupdate\n";
+        String stream = "blob\nmark :1\ndata 1\n1\nblob\nmark :2\ndata 1\n2\n"
+                + commit + "M :1 f\n\n" + commit + "M :2 f\n\n" + commit + "M :1 f\n\ndone\n";
+        new FastImport(new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8))).run();
+
+        // Check branch is on last commit, with every commit in its history
+        Commit last = Commit.getCurrent();
+        Commit middle = Commit.getByID(last.getParent());
+        Commit first = Commit.getByID(middle.getParent());
+        assertEquals(first._tree, last._tree);
+        assertNotEquals(first._sha1, last._sha1);
+        assertEquals("2", new String(Blob.readContents(Tree.getBlobs(middle._tree).get("f")), StandardCharsets.UTF_8));
+        assertEquals(Commit.zeroSha1, first.getParent());
+    }
+
+    /** History exported by fast-export is imported again with the same files, messages and times */
+    @Test
+    public void fastExportTest() throws IOException {
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "wug");
+        Utils.writeContents(Utils.join(Main.USERDIR, "cup.txt"), "cup");
+        Main.main("add", "wug.txt", "cup.txt");
+        Main.main("commit", "added wug and cup");
+        Main.main("branch", "other");
+        Main.main("rm", "cup.txt");
+        Main.main("commit", "removed cup");
+        Main.main("checkout", "other");
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "wug2");
+        Main.main("add", "wug.txt");
+        Main.main("commit", "changed wug");
+        Main.main("checkout", "master");
+        Main.main("merge", "other");
+        Commit merge = Commit.getCurrent();
+        HashMap<String, String> mergeBlobs = Commit.getCurrentBlobs();
+        String otherTime = Commit.getByID(Branch.read("other"))._time;
+
+        // Export history of every branch
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new FastExport(out).run(Arrays.asList("master", "other"));
+        String stream = out.toString(StandardCharsets.UTF_8);
+        // Note: each of the 3 distinct file versions is written once
+        assertEquals(3, stream.split("blob\nmark", -1).length - 1);
+
+        // Import history into new repository
+        Utils.clearCwdWithGitlet();
+        Main.main("init");
+        new FastImport(new ByteArrayInputStream(out.toByteArray())).run();
+        Commit imported = Commit.getCurrent();
+        assertEquals(merge._logMessage, imported._logMessage);
+        assertEquals(merge._time, imported._time);
+        assertTrue(imported.isMerge());
+        assertEquals(mergeBlobs, Commit.getCurrentBlobs());
+        assertEquals(imported._parents.get(1), Branch.read("other"));
+        assertEquals(otherTime, Commit.getByID(Branch.read("other"))._time);
+        assertEquals(Arrays.asList("removed cup", "added wug and cup", "initial commit"),
+                Arrays.asList(Commit.getByID(imported.getParent())._logMessage,
+                        Commit.getByID(Commit.getByID(imported.getParent()).getParent())._logMessage,
+                        Commit.getByID(Commit.zeroSha1)._logMessage));
+
+        // Check file replaced by directory, and directory replaced by file, round-trip to same commits
+        Utils.clearCwdWithGitlet();
+        Main.main("init");
+        Utils.writeContents(Utils.join(Main.USERDIR, "x"), "x");
+        Main.main("add", "x");
+        Main.main("commit", "added x");
+        Main.main("rm", "x");
+        Utils.join(Main.USERDIR, "x").mkdirs();
+        Utils.writeContents(Utils.join(Main.USERDIR, "x", "y"), "y");
+        Main.main("add", "x");
+        Main.main("commit", "replaced x with x/y");
+        String directoryCommit = Commit.getCurrentID();
+        Main.main("rm", "x/y");
+        Utils.writeContents(Utils.join(Main.USERDIR, "x"), "x2");
+        Main.main("add", "x");
+        Main.main("commit", "replaced x/y with x");
+        String fileCommit = Commit.getCurrentID();
+        out.reset();
+        new FastExport(out).run(Arrays.asList("master"));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("from :2\nD x\nM :3 x/y\n"));
+        Utils.clearCwdWithGitlet();
+        Main.main("init");
+        new FastImport(new ByteArrayInputStream(out.toByteArray())).run();
+        assertEquals(fileCommit, Commit.getCurrentID());
+        assertEquals(directoryCommit, Commit.getCurrent().getParent());
+    }
+
+    // ----- TREE TESTS -----
+
+    /** Trees with same files have same identifier on every branch, regardless of order files were added in */
+    @Test
+    public void treeHashTest() throws IOException {
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "wug");
+        Utils.writeContents(Utils.join(Main.USERDIR, "cup.txt"), "cup");
+        Main.main("branch", "other");
+        Main.main("add", "wug.txt", "cup.txt");
+        Main.main("commit", "added wug and cup");
+        String masterTree = Commit.getCurrent()._tree;
+
+        // Note: checkout removes files not tracked on other branch
+        Main.main("checkout", "other");
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "wug");
+        Utils.writeContents(Utils.join(Main.USERDIR, "cup.txt"), "cup");
+        Main.main("add", "cup.txt");
+        Main.main("commit", "added cup");
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added wug");
+        assertEquals(masterTree, Commit.getCurrent()._tree);
+        assertNotEquals(Commit.getCurrentID(), Branch.read("master"));
+
+        // Check identifier depends only on sorted entries
+        HashMap<String, String> blobs = new HashMap<>();
+        blobs.put("cup.txt", Commit.getCurrentBlobs().get("cup.txt"));
+        blobs.put("wug.txt", Commit.getCurrentBlobs().get("wug.txt"));
+        assertEquals(masterTree, new Tree(blobs).createHash());
+        blobs.remove("cup.txt");
+        assertNotEquals(masterTree, new Tree(blobs).createHash());
+    }
+
+    /** Files in subdirectories are committed as one tree per directory, and a change only creates trees along its path */
+    @Test
+    public void subdirectoryTreeTest() throws IOException {
+        Utils.join(Main.USERDIR, "src", "main").mkdirs();
+        Utils.join(Main.USERDIR, "docs").mkdirs();
+        Utils.writeContents(Utils.join(Main.USERDIR, "src", "main", "wug.txt"), "wug");
+        Utils.writeContents(Utils.join(Main.USERDIR, "src", "cup.txt"), "cup");
+        Utils.writeContents(Utils.join(Main.USERDIR, "docs", "dog.txt"), "dog");
+        assertEquals(Arrays.asList("docs/dog.txt", "src/cup.txt", "src/main/wug.txt"), Utils.getUntrackedFiles());
+        Main.main("add", ".");
+        Main.main("commit", "added files");
+        Tree first = ObjectStore.readObject(Commit.getCurrent()._tree, Main.TREE, Tree::decode);
+        assertEquals(Collections.emptySet(), first._blobList.keySet());
+        assertEquals(new TreeSet<>(Arrays.asList("docs", "src")), new TreeSet<>(first._trees.keySet()));
+        assertEquals(new TreeSet<>(Arrays.asList("docs/dog.txt", "src/cup.txt", "src/main/wug.txt")),
+                new TreeSet<>(Commit.getCurrentBlobs().keySet()));
+
+        // Change one file: only trees of root, src and src/main are created again
+        int trees = ObjectStore.list(Main.TREE).size();
+        Utils.writeContents(Utils.join(Main.USERDIR, "src", "main", "wug.txt"), "wug2");
+        Main.main("add", "src");
+        Main.main("commit", "changed wug");
+        Tree second = ObjectStore.readObject(Commit.getCurrent()._tree, Main.TREE, Tree::decode);
+        assertEquals(trees + 3, ObjectStore.list(Main.TREE).size());
+        assertEquals(first._trees.get("docs"), second._trees.get("docs"));
+        assertEquals(Collections.singletonList("src/main/wug.txt"),
+                new ArrayList<>(Tree.changes(first._sha1, second._sha1).keySet()));
+
+        // Removed directory is removed from tree and working directory, and restored on checkout
+        String secondID = Commit.getCurrentID();
+        Main.main("rm", "docs/dog.txt");
+        Main.main("commit", "removed dog");
+        assertFalse(Utils.join(Main.USERDIR, "docs").exists());
+        assertNull(ObjectStore.readObject(Commit.getCurrent()._tree, Main.TREE, Tree::decode)._trees.get("docs"));
+        Main.main("reset", secondID);
+        assertEquals("dog", Utils.readContentsAsString(Utils.join(Main.USERDIR, "docs", "dog.txt")));
+        assertEquals("wug2", Utils.readContentsAsString(Utils.join(Main.USERDIR, "src", "main", "wug.txt")));
+    }
+
+    // ----- DIFF TESTS -----
+
+    /** Diff lists changed files in path order between commits, stage and working directory */
+    @Test
+    public void diffTest() throws IOException {
+        Utils.join(Main.USERDIR, "src").mkdirs();
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "wug");
+        Utils.writeContents(Utils.join(Main.USERDIR, "src", "cup.txt"), "cup");
+        Utils.writeContents(Utils.join(Main.USERDIR, "src", "dog.txt"), "dog");
+        Main.main("add", ".");
+        Main.main("commit", "added files");
+        String first = Commit.getCurrentID();
+        Utils.writeContents(Utils.join(Main.USERDIR, "src", "cup.txt"), "cup2");
+        Utils.writeContents(Utils.join(Main.USERDIR, "src-new.txt"), "new");
+        Main.main("add", "src/cup.txt", "src-new.txt");
+        Main.main("rm", "src/dog.txt");
+        Main.main("commit", "changed files");
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "wug2");
+        Utils.writeContents(Utils.join(Main.USERDIR, "untracked.txt"), "untracked");
+        Utils.writeContents(Utils.join(Main.USERDIR, "staged.txt"), "staged");
+        Main.main("add", "staged.txt");
+
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out, true));
+        try {
+            Main.main("diff", first, "master");
+            Main.main("diff", "--cached");
+            Main.main("diff");
+            Main.main("diff", first.substring(0, 8));
+        } finally {
+            System.setOut(stdout);
+        }
+        // Note: "src-new.txt" is sorted before "src/cup.txt", as in sorted list of paths
+        assertEquals("A\tsrc-new.txt\nM\tsrc/cup.txt\nD\tsrc/dog.txt\n"
+                + "A\tstaged.txt\n"
+                + "M\twug.txt\n"
+                + "A\tsrc-new.txt\nM\tsrc/cup.txt\nD\tsrc/dog.txt\nA\tstaged.txt\nM\twug.txt\n",
+                out.toString(StandardCharsets.UTF_8));
+
+        // Check engine visits changes of trees and of flat snapshots in same order
+        ArrayList<String> treeChanges = new ArrayList<>();
+        ArrayList<String> mapChanges = new ArrayList<>();
+        Commit commit = Commit.getCurrent();
+        Diff.trees(Commit.getByID(first)._tree, commit._tree, (path, oldID, newID) -> treeChanges.add(path));
+        Diff.maps(Tree.getBlobs(Commit.getByID(first)._tree), Tree.getBlobs(commit._tree),
+                (path, oldID, newID) -> mapChanges.add(path));
+        assertEquals(Arrays.asList("src-new.txt", "src/cup.txt", "src/dog.txt"), treeChanges);
+        assertEquals(treeChanges, mapChanges);
+    }
+
+    // ----- LINE DIFF TESTS -----
+
+    /** Line diff writes joined hunks with given context, and marks last lines without new line */
+    @Test
+    public void lineDiffTest() throws IOException {
+        byte[] old = "a\nb\nc\nd\ne\nf\ng\nh\ni\nj\nk".getBytes(StandardCharsets.UTF_8);
+        byte[] contents = "a\nB\nc\nd\ne\nf\nG\nh\ni\nj\nk\n".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new LineDiff(old, contents).writeHunks(out, 1);
+        assertEquals("@@ -1,3 +1,3 @@\n a\n-b\n+B\n c\n"
+                + "@@ -6,3 +6,3 @@\n f\n-g\n+G\n h\n"
+                + "@@ -10,2 +10,2 @@\n j\n-k\n\\ No newline at end of file\n+k\n",
+                out.toString(StandardCharsets.UTF_8));
+
+        // Note: hunks with overlapping context are joined, and empty ranges give line before them
+        out.reset();
+        new LineDiff(old, contents).writeHunks(out, 2);
+        assertEquals("@@ -1,11 +1,11 @@\n a\n-b\n+B\n c\n d\n e\n f\n-g\n+G\n h\n i\n j\n-k\n"
+                + "\\ No newline at end of file\n+k\n", out.toString(StandardCharsets.UTF_8));
+        out.reset();
+        new LineDiff(new byte[0], "x\n".getBytes(StandardCharsets.UTF_8)).writeHunks(out, 3);
+        assertEquals("@@ -0,0 +1 @@\n+x\n", out.toString(StandardCharsets.UTF_8));
+
+        // Moved line is kept as unique line order allows, and diff is minimal
+        LineDiff diff = new LineDiff("1\n2\n3\n4\n5\n".getBytes(StandardCharsets.UTF_8),
+                "1\n3\n4\n5\n2\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, diff.edits().size());
+        assertArrayEquals(new int[]{1, 2, 1, 1}, diff.edits().get(0));
+        assertArrayEquals(new int[]{5, 5, 4, 5}, diff.edits().get(1));
+    }
+
+    /** Diff command prints changes as unified diff with patch options */
+    @Test
+    public void diffPatchTest() throws IOException {
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "1\n2\n3\n4\n5\n6\n7\n8\n");
+        Utils.writeContents(Utils.join(Main.USERDIR, "cup.txt"), "cup\n");
+        Main.main("add", "wug.txt", "cup.txt");
+        Main.main("commit", "added files");
+        String first = Commit.getCurrentID();
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "1\n2\n3\n4\nfive\n6\n7\n8\n");
+        Main.main("rm", "cup.txt");
+
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out, true));
+        try {
+            Main.main("diff", "-p");
+            Main.main("diff", "-U0", "--cached");
+            Main.main("diff", "-U1", first);
+            Main.main("diff", "-x");
+        } finally {
+            System.setOut(stdout);
+        }
+        assertEquals("diff --git a/wug.txt b/wug.txt\n--- a/wug.txt\n+++ b/wug.txt\n"
+                + "@@ -2,7 +2,7 @@\n 2\n 3\n 4\n-5\n+five\n 6\n 7\n 8\n"
+                + "diff --git a/cup.txt b/cup.txt\n--- a/cup.txt\n+++ /dev/null\n@@ -1 +0,0 @@\n-cup\n"
+                + "diff --git a/cup.txt b/cup.txt\n--- a/cup.txt\n+++ /dev/null\n@@ -1 +0,0 @@\n-cup\n"
+                + "diff --git a/wug.txt b/wug.txt\n--- a/wug.txt\n+++ b/wug.txt\n"
+                + "@@ -4,3 +4,3 @@\n 4\n-5\n+five\n 6\n"
+                + "Incorrect operands.\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    // ----- LINE MERGE TESTS -----
+
+    /** Three-way line merge takes changes of either side, and marks only lines both sides changed differently */
+    @Test
+    public void mergeLinesTest() throws IOException {
+        byte[] base = "1\n2\n3\n4\n5\n6\n7\n".getBytes(StandardCharsets.UTF_8);
+        byte[] current = "0\n1\n2\nthree\n4\n5\nsix\n7\n".getBytes(StandardCharsets.UTF_8);
+        byte[] target = "1\n2\nthree\n4\n5\nSIX\n7\n8\n".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(Merge.mergeLines(out, base, current, target));
+        // Note: line 3 was changed the same way by both sides, so it is kept once
+        assertEquals("0\n1\n2\nthree\n4\n5\n<<<<<<< HEAD\nsix\n=======\nSIX\n>>>>>>>\n7\n8\n",
+                out.toString(StandardCharsets.UTF_8));
+
+        out.reset();
+        assertFalse(Merge.mergeLines(out, base, current, "1\n2\n3\n4\n5\n6\n7\n8\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("0\n1\n2\nthree\n4\n5\nsix\n7\n8\n", out.toString(StandardCharsets.UTF_8));
+
+        // Changes at adjacent lines conflict
+        out.reset();
+        assertTrue(Merge.mergeLines(out, base, "1\n2\nthree\n4\n5\n6\n7\n".getBytes(StandardCharsets.UTF_8),
+                "1\n2\n3\nfour\n5\n6\n7\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("1\n2\n<<<<<<< HEAD\nthree\n4\n=======\n3\nfour\n>>>>>>>\n5\n6\n7\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    /** Merge of file changed at different lines in both branches is resolved and committed without conflict */
+    @Test
+    public void mergeLinesCommandTest() throws IOException {
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "a\nb\nc\nd\ne\n");
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added wug");
+        Main.main("branch", "other");
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "A\nb\nc\nd\ne\n");
+        Main.main("add", "wug.txt");
+        Main.main("commit", "changed first line");
+        Main.main("checkout", "other");
+        Utils.writeContents(Utils.join(Main.USERDIR, "wug.txt"), "a\nb\nc\nd\nE\n");
+        Main.main("add", "wug.txt");
+        Main.main("commit", "changed last line");
+        Main.main("checkout", "master");
+
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out, true));
+        try {
+            Main.main("merge", "other");
+        } finally {
+            System.setOut(stdout);
+        }
+        assertEquals("", out.toString(StandardCharsets.UTF_8));
+        assertEquals("A\nb\nc\nd\nE\n", Utils.readContentsAsString(Utils.join(Main.USERDIR, "wug.txt")));
+        assertEquals(new Blob(Utils.join(Main.USERDIR, "wug.txt"))._sha1, Commit.getCurrentBlobs().get("wug.txt"));
+        assertEquals(2, Commit.getCurrent()._parents.size());
+    }
+
 // TODO-LATER
 
 //    ----- REBASE TESTS -----
@@ -4,6 +4,7 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
@@ -45,6 +46,29 @@ class Utils {
         }
     }
 
+    /** Hexadecimal digits, indexed by value. */
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /** Returns the hexadecimal numeral of the bytes in ID. */
+    static String toHex(byte[] id) {
+        // Note: digits are looked up in table, since identifiers of every tree entry are converted when read
+        byte[] result = new byte[id.length * 2];
+        for (int i = 0; i < id.length; i++) {
+            result[2 * i] = HEX_DIGITS[(id[i] >> 4) & 0xf];
+            result[2 * i + 1] = HEX_DIGITS[id[i] & 0xf];
+        }
+        return new String(result, StandardCharsets.US_ASCII);
+    }
+
+    /** Returns the bytes of the hexadecimal numeral ID. */
+    static byte[] toBytes(String id) {
+        byte[] result = new byte[id.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) Integer.parseInt(id.substring(2 * i, 2 * i + 2), 16);
+        }
+        return result;
+    }
+
     /** Returns the SHA-1 hash of the concatenation of the strings in
      *  VALS. */
     static String sha1(List<Object> vals) {
@@ -206,6 +230,19 @@ class Utils {
         }
     }
 
+    /** Return an object of type T read from CONTENTS, casting it to EXPECTEDCLASS.
+     *  Throws IllegalArgumentException in case of problems. */
+    static <T extends Serializable> T deserialize(byte[] contents, Class<T> expectedClass) {
+        try {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(contents));
+            T result = expectedClass.cast(in.readObject());
+            in.close();
+            return result;
+        } catch (IOException | ClassCastException | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
     /* MESSAGES AND ERROR REPORTING */
 
     /** Return a GitletException whose message is composed from MSG and ARGS as
@@ -242,51 +279,44 @@ class Utils {
 
     /** Create time stamp for commits */
     public static String createTime() {
-        Calendar cal = Calendar.getInstance();
+        return createTime(Calendar.getInstance());
+    }
+
+    /** Create time stamp for commits from given seconds since epoch and time zone offset (ex: -0800) */
+    static String createTime(long seconds, String zone) {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT" + zone));
+        cal.setTimeInMillis(seconds * 1000);
+        return createTime(cal);
+    }
+
+    /** Format given calendar time as time stamp for commits */
+    private static String createTime(Calendar cal) {
         Formatter f = new Formatter();
         f.format("%ta %th %td %tT %tY %tz",cal,cal,cal,cal,cal,cal);
         return "Date: " + f.toString();
     }
 
     /** Create a file path for gitlet files or folders */
-    // Note: can look up files up to 5 characters and above (commits)
+    // Note: can look up objects by abbreviated identifier of 2 characters and above
     static File createFilePath(String name, File file) {
 
-        // Return file path
-        File path = null;
-
-        // Check if file is Commit object with short hash
-        if (file.equals(Main.COMMITS) && name.length() < UID_LENGTH) {
-            for (File folder : Main.COMMITS.listFiles()) {
-                // Note: check if folder contains first 2 characters
-                if (folder.getName().equals(name.substring(0,2))) {
-                    for (File innerFile : folder.listFiles()) {
-                        int len = name.substring(2).length();
-                        // Note: if innerfile name until equal to name
-                        if (innerFile.getName().substring(0, len).equals(name.substring(2))) {
-                            path = innerFile;
-                            break;
-                        }
-                    }
-                }
-            }
-        }
-
-        // Return key file path for commits, blobs or tree objects
+        // Return loose file path for commits, blobs or tree objects (including short hash)
+        // Note: packed objects have no file path and are read with ObjectStore
         List<File> keyFiles = Arrays.asList(Main.COMMITS, Main.BLOB, Main.TREE);
         if (keyFiles.contains(file)) {
-            File tempPath = Utils.join(file, name.substring(0, 2), name.substring(2));
-            if (tempPath.exists()) {
-                path = tempPath;
+            String id = ObjectStore.resolve(name, file);
+            if (id != null && ObjectStore.looseFile(id, file).exists()) {
+                return ObjectStore.looseFile(id, file);
             }
+            return null;
         }
 
         // Return non-key file paths
         File tempPath = Utils.join(file, name);
         if (tempPath.exists()) {
-            path = tempPath;
+            return tempPath;
         }
-        return path;
+        return null;
     }
 
     /** Check if file exists in top level of current working directory */
@@ -294,16 +324,6 @@ class Utils {
         return join(Main.USERDIR,fileName).exists();
     }
 
-    /** Find file in current working directory. Returns file's hash/ */
-    static String findByFileName(String fileName) {
-        if (existsInCWD(fileName)) {
-            File file = join(Main.USERDIR,fileName);
-            Blob blob = new Blob(file);
-            return blob._sha1;
-        }
-        return null;
-    }
-
     /** Create empty file. Used for testing. */
     public static void createEmptyFile(String name) throws IOException {
         File random = Utils.join(Main.USERDIR,name);
@@ -330,118 +350,135 @@ class Utils {
         fos.close();
     }
 
-    /** Get tree of commits beginning at given commit */
+    /** Get tree of commits beginning at given commit, following first parents */
     public static ArrayList<String> getCommitArray(Commit commit,ArrayList<String> array) throws IOException {
         if (commit == null) {
             return null;
-        } else if (commit._parentSha1 == null) {
-            array.add(commit._sha1);
-            return array;
         }
-        array.add(commit._sha1);
-        Commit next = Commit.getByID(commit._parentSha1);
-        return getCommitArray(next,array);
+        RevWalk walk = new RevWalk(RevWalk.Order.FIRST_PARENT).start(commit._sha1);
+        while (walk.hasNext()) {
+            array.add(walk.nextID());
+        }
+        return array;
     }
     
     /** Check if there exists file that is untracked in current working directory */
     public static boolean checkUntrackedCwd() {
-        ArrayList<String> firstCommitFiles = Utils.getAllBlobs();
-        File[] objectList = Main.USERDIR.listFiles();
+        return !getUntrackedFiles().isEmpty();
+    }
+
+    /** Get names of files in current working directory that are neither tracked in HEAD commit nor staged for
+     *  addition. Note: answered from HEAD tree and index by file name, so no file or blob contents are read. */
+    public static ArrayList<String> getUntrackedFiles() {
+        HashMap<String, String> trackedFiles = Commit.getCurrentBlobs();
+        HashMap<String, String> stagedFiles = Stage.read()._additions;
+        ArrayList<String> untrackedFiles = new ArrayList<>();
+        for (String fileName : getWorkingFiles()) {
+            if (!trackedFiles.containsKey(fileName) && !stagedFiles.containsKey(fileName)) {
+                untrackedFiles.add(fileName);
+            }
+        }
+        return untrackedFiles;
+    }
 
-        for (File file : objectList) {
-            String fileName = file.getName();
-            if (IGNORE_FILES.contains(fileName)) {
+    /** Get paths of files in current working directory and its subdirectories, in sorted order. Paths of files in
+     *  subdirectories are separated by '/'. Note: IGNORE_FILES are only skipped at top of working directory. */
+    public static ArrayList<String> getWorkingFiles() {
+        ArrayList<String> files = new ArrayList<>();
+        addWorkingFiles(Main.USERDIR, "", files);
+        return files;
+    }
+
+    /** Add paths of files in given directory and its subdirectories, by path from given prefix */
+    private static void addWorkingFiles(File directory, String prefix, ArrayList<String> files) {
+        String[] names = directory.list();
+        if (names == null) {
+            return;
+        }
+        Arrays.sort(names);
+        for (String name : names) {
+            File file = join(directory, name);
+            if (prefix.isEmpty() && IGNORE_FILES.contains(name)) {
                 continue;
+            } else if (file.isDirectory()) {
+                addWorkingFiles(file, prefix + name + "/", files);
+            } else if (file.isFile()) {
+                files.add(prefix + name);
             }
-            byte[] fileByte = Utils.readContents(file);
-            String fileSHA1 = Utils.sha1(fileByte, file.getName());
-            // Note: checks if file is in blob folder (tracked)
-            if (firstCommitFiles == null || !firstCommitFiles.contains(fileSHA1)) {
-                return true;
+        }
+    }
+
+    /** Delete file with given path from current working directory, along with directories it leaves empty */
+    static void deleteFile(String fileName) {
+        File file = join(Main.USERDIR, fileName);
+        file.delete();
+        for (File parent = file.getParentFile(); !parent.equals(Main.USERDIR); parent = parent.getParentFile()) {
+            String[] names = parent.list();
+            if (names == null || names.length > 0 || !parent.delete()) {
+                break;
             }
         }
-        return false;
     }
 
     /** Get all commits starting from given commit. Returns ArrayList of commit hash */
     public static ArrayList<String> getAllCommitHistory(Commit commit, ArrayList<String> arr) {
         if (commit == null) {
             return arr;
-        } else if (!arr.contains(commit._sha1)) {
-            arr.add(commit._sha1);
         }
-        if (commit._mergedId != null) {
-            String merge = commit._mergedId;
-            File c1 = Utils.createFilePath(merge.substring(0,7), Main.COMMITS);
-            File c2 = Utils.createFilePath(merge.substring(8,15), Main.COMMITS);
-            getAllCommitHistory(Utils.readObject(c1, Commit.class), arr);
-            getAllCommitHistory(Utils.readObject(c2, Commit.class), arr);
+        // Note: commits are walked in topological order without reading them
+        HashSet<String> added = new HashSet<>(arr);
+        RevWalk walk = new RevWalk(RevWalk.Order.TOPO).start(commit._sha1);
+        while (walk.hasNext()) {
+            String id = walk.nextID();
+            if (added.add(id)) {
+                arr.add(id);
+            }
         }
-        getAllCommitHistory(Commit.getByID(commit._parentSha1), arr);
         return arr;
     }
 
-    /** Get all blobs contained in .gitlet blob folder */
-    public static ArrayList<String> getAllBlobs() {
-        ArrayList<String> blobFiles = new ArrayList<>();
-        File[] files = Main.BLOB.listFiles();
-        if (files.length > 0) {
-            for (File folder : files) {
-                for (File innerFile : folder.listFiles()) {
-                    Blob blob = Utils.readObject(innerFile, Blob.class);
-                    blobFiles.add(blob._sha1);
-                }
+    /**
+     * Replace files in current working directory with given files. Only files that differ are changed: files not in
+     * given list are deleted, and files are only written if working version differs from given version.
+     * Note: working versions are compared using stat data in index, so unchanged files are not read or written.
+     */
+    public static void replaceCwdFiles(HashMap<String,String> filesList) throws IOException {
+        Stage stage = Stage.read();
+
+        // Remove files not in given files
+        for (String fileName : getWorkingFiles()) {
+            if (!filesList.containsKey(fileName)) {
+                deleteFile(fileName);
+                stage._stats.remove(fileName);
             }
-            return blobFiles;
         }
-        return null;
-    }
-
-    /** Replace files in current working directory. */
-    public static void replaceCwdFiles(HashMap<String,String> filesList) throws IOException {
-        // Clear current working directory of all files
-        Utils.clearCwd();
 
         // Replace given files contents from version in given hash
-        Iterator iter = filesList.entrySet().iterator();
-        for (Iterator it = iter; it.hasNext(); ) {
-            Map.Entry obj = (Map.Entry) it.next();
-            String name = (String) obj.getKey();
-            String sha1 = (String) obj.getValue();
-            Utils.overwriteHelper(name, sha1);
+        // Note: files are written in parallel, and new stat data is recorded with known hash so written files
+        // are not hashed again
+        ParallelCheckout.write(filesList, stage);
+        Stage.write(stage);
+    }
+
+    /** Write contents of blob with given sha1 into file */
+    private static void writeBlob(File file, String sha1) throws IOException {
+        // Note: blob contents are decompressed while being copied into file
+        file.getParentFile().mkdirs();
+        try (InputStream blob = Blob.openStream(sha1)) {
+            Files.copy(blob, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
     /** Helper method to overwrite file based on sha1 */
     public static void overwriteHelper(String fileName, String sha1) throws IOException {
-        if (existsInCWD(fileName)) {
-            File blobFile = Utils.createFilePath(sha1, Main.BLOB);
-            Blob blob = Utils.readObject(blobFile, Blob.class);
-            Utils.writeContents(join(Main.USERDIR,fileName), blob._fileContent);
-        } else {
-            // Adds file to current working directory based on version in SHA1 hash
-            File blobFile = createFilePath(sha1, Main.BLOB);
-            Blob blob = readObject(blobFile,Blob.class);
-            File innerFile = join(Main.USERDIR,blob._name);
-            innerFile.createNewFile();
-            Utils.writeContents(innerFile,blob._fileContent);
+        boolean exists = existsInCWD(fileName);
+        writeBlob(join(Main.USERDIR, fileName), sha1);
+        if (!exists) {
+            // Added file to current working directory based on version in SHA1 hash
             Stage.restore(fileName);
         }
     }
 
-    /** Clear current working directory. Does not remove files in IGNORE_FILES. */
-    public static void clearCwd() {
-        File[] objectList = Main.USERDIR.listFiles();
-
-        for (File file : objectList) {
-            String fileName = file.getName();
-            if (IGNORE_FILES.contains(fileName)) {
-                continue;
-            }
-            file.delete();
-        }
-    }
-
     /** Helper function for clearCwdWithGitlet */
     public static void deleteDirectory(File file) {
         for (File subfile : file.listFiles()) {